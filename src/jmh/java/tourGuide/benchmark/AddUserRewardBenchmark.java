@@ -0,0 +1,70 @@
+package tourGuide.benchmark;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.user.User;
+import tourGuide.user.UserReward;
+
+/**
+ * User.addUserReward from 8 threads on the same user, as the reward tasks of concurrent calculations do.
+ * The user is renewed every iteration, the first adds of an attraction insert, the next ones are rejected duplicates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class AddUserRewardBenchmark {
+    private static final int ATTRACTION_COUNT = 4096;
+
+    private UserReward[] rewards;
+    private User user;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        VisitedLocation visitedLocation = new VisitedLocation(UUID.randomUUID(), new Location(0, 0), new Date());
+        rewards = new UserReward[ATTRACTION_COUNT];
+        for (int i = 0; i < ATTRACTION_COUNT; i++) {
+            Attraction attraction = new Attraction("attraction" + i, "city", "state",
+                    random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+            rewards[i] = new UserReward(visitedLocation, attraction, i);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpUser() {
+        user = new User(UUID.randomUUID(), "benchmark", "000", "benchmark@tourGuide.com");
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next = new Random().nextInt(ATTRACTION_COUNT);
+    }
+
+    @Benchmark
+    public boolean addUserReward(Cursor cursor) {
+        return user.addUserReward(rewards[cursor.next++ & (ATTRACTION_COUNT - 1)]);
+    }
+}
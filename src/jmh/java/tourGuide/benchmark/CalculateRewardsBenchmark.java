@@ -0,0 +1,133 @@
+package tourGuide.benchmark;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.attraction.AttractionSnapshot;
+import tourGuide.service.RewardsService;
+import tourGuide.user.User;
+
+/**
+ * RewardsService.calculateRewards for a history of historyLength locations:
+ * fullScan is the first calculation of a new user, incremental is the calculation after one new location.
+ * A calculation changes its user, so every iteration goes once through a pool of USER_COUNT users built before it:
+ * the setup stays out of the measurement, and JMH doesn't time each call on its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class CalculateRewardsBenchmark {
+    private static final int USER_COUNT = 1000;
+
+    @Param({"10", "100", "1000"})
+    public int historyLength;
+
+    @Param({"0"})
+    public long rewardCentralLatencyMicros;
+
+    private RewardsService rewardsService;
+    private Location[] locations;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rewardsService = new RewardsService(new StubGpsUtil(0, TimeUnit.NANOSECONDS),
+                new StubRewardCentral(rewardCentralLatencyMicros, TimeUnit.MICROSECONDS));
+        AttractionSnapshot attractions = rewardsService.getAttractionCatalog().getSnapshot();
+        Random random = new Random(42);
+        locations = new Location[historyLength + 1];
+        for (int i = 0; i < locations.length; i++) {
+            if (i % 10 == 0) {
+                // one location in ten is on an attraction, so the calculation grants rewards
+                Attraction attraction = attractions.get(random.nextInt(attractions.size()));
+                locations[i] = new Location(attraction.latitude, attraction.longitude);
+            } else {
+                locations[i] = new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+            }
+        }
+    }
+
+    /**
+     * Users with historyLength locations, never calculated
+     */
+    @State(Scope.Thread)
+    public static class NewUsers {
+        private final User[] users = new User[USER_COUNT];
+
+        @Setup(Level.Iteration)
+        public void setUp(CalculateRewardsBenchmark benchmark) {
+            for (int i = 0; i < USER_COUNT; i++) {
+                users[i] = benchmark.userWithHistory();
+            }
+        }
+    }
+
+    /**
+     * Users calculated once with historyLength locations, then given one more location
+     */
+    @State(Scope.Thread)
+    public static class TrackedUsers {
+        private final User[] users = new User[USER_COUNT];
+
+        @Setup(Level.Iteration)
+        public void setUp(CalculateRewardsBenchmark benchmark) {
+            for (int i = 0; i < USER_COUNT; i++) {
+                User user = benchmark.userWithHistory();
+                benchmark.rewardsService.calculateRewards(user);
+                user.addToVisitedLocations(new VisitedLocation(user.getUserId(), benchmark.locations[benchmark.historyLength], new Date()));
+                users[i] = user;
+            }
+        }
+    }
+
+    private User userWithHistory() {
+        User user = new User(UUID.randomUUID(), "benchmark", "000", "benchmark@tourGuide.com");
+        for (int i = 0; i < historyLength; i++) {
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), locations[i], new Date()));
+        }
+        return user;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        rewardsService.getRewardCentralExecutor().shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(USER_COUNT)
+    public void fullScan(NewUsers newUsers) {
+        for (User user : newUsers.users) {
+            rewardsService.calculateRewards(user);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(USER_COUNT)
+    public void incremental(TrackedUsers trackedUsers) {
+        for (User user : trackedUsers.users) {
+            rewardsService.calculateRewards(user);
+        }
+    }
+}
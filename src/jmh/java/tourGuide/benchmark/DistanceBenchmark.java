@@ -0,0 +1,91 @@
+package tourGuide.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import tourGuide.attraction.AttractionSnapshot;
+import tourGuide.attraction.DistanceKernel;
+import tourGuide.service.RewardsService;
+
+/**
+ * Distances from one location to every attraction: the scalar RewardsService.getDistance,
+ * the batch DistanceKernel, and the proximity search of the snapshot (grid cells + kernel)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+    private static final int LOCATION_COUNT = 1024;
+
+    private RewardsService rewardsService;
+    private AttractionSnapshot attractions;
+    private Location[] locations;
+    private double[] distances;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        rewardsService = new RewardsService(new StubGpsUtil(0, TimeUnit.NANOSECONDS), new StubRewardCentral(0, TimeUnit.NANOSECONDS));
+        attractions = rewardsService.getAttractionCatalog().getSnapshot();
+        distances = new double[attractions.size()];
+        Random random = new Random(42);
+        locations = new Location[LOCATION_COUNT];
+        for (int i = 0; i < LOCATION_COUNT; i++) {
+            locations[i] = new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        rewardsService.getRewardCentralExecutor().shutdown();
+    }
+
+    private Location nextLocation() {
+        return locations[next++ & (LOCATION_COUNT - 1)];
+    }
+
+    @Benchmark
+    public void rewardsServiceGetDistance(Blackhole blackhole) {
+        Location location = nextLocation();
+        for (Attraction attraction : attractions.getAttractions()) {
+            blackhole.consume(rewardsService.getDistance(attraction, location));
+        }
+    }
+
+    @Benchmark
+    public double[] kernelDistances() {
+        Location location = nextLocation();
+        DistanceKernel distanceKernel = attractions.getDistanceKernel();
+        distanceKernel.distances(location.latitude, location.longitude, distances);
+        return distances;
+    }
+
+    @Benchmark
+    public void snapshotForEachWithin(Blackhole blackhole) {
+        Location location = nextLocation();
+        attractions.forEachWithin(location, 10, blackhole::consume);
+    }
+
+    @Benchmark
+    public int[] snapshotFindNearest() {
+        return attractions.findNearest(nextLocation(), 5);
+    }
+}
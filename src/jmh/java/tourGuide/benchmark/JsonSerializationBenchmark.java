@@ -0,0 +1,111 @@
+package tourGuide.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jsoniter.output.JsonStream;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.attraction.AttractionSnapshot;
+import tourGuide.dto.NearAttractionDTO;
+import tourGuide.helper.CurrentLocationsJsonWriter;
+import tourGuide.service.RewardsService;
+import tourGuide.user.UserReward;
+
+/**
+ * Serialization of the controller payloads: nearby attractions, rewards,
+ * and the current locations of userCount users, as one Map or streamed by CurrentLocationsJsonWriter
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    private List<NearAttractionDTO> nearAttractions;
+    private List<UserReward> userRewards;
+
+    @State(Scope.Thread)
+    public static class CurrentLocations {
+        @Param({"1000", "100000"})
+        public int userCount;
+
+        private final Map<UUID, Location> byUserId = new HashMap<>();
+        private final Map<String, Location> byUserIdString = new HashMap<>();
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(42);
+            for (int i = 0; i < userCount; i++) {
+                UUID userId = new UUID(random.nextLong(), random.nextLong());
+                Location location = new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+                byUserId.put(userId, location);
+                byUserIdString.put(userId.toString(), location);
+            }
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        RewardsService rewardsService = new RewardsService(new StubGpsUtil(0, TimeUnit.NANOSECONDS), new StubRewardCentral(0, TimeUnit.NANOSECONDS));
+        AttractionSnapshot attractions = rewardsService.getAttractionCatalog().getSnapshot();
+        rewardsService.getRewardCentralExecutor().shutdown();
+
+        VisitedLocation visitedLocation = new VisitedLocation(UUID.randomUUID(), new Location(40.7, -74.0), new Date());
+        nearAttractions = new ArrayList<>();
+        for (int index : attractions.findNearest(visitedLocation.location, 5)) {
+            // as TourGuideService builds them
+            nearAttractions.add(new NearAttractionDTO(attractions.get(index), visitedLocation,
+                    attractions.getDistance(index, visitedLocation.location), index));
+        }
+        userRewards = new ArrayList<>();
+        for (int index = 0; index < attractions.size(); index++) {
+            userRewards.add(new UserReward(visitedLocation, attractions.get(index), index));
+        }
+    }
+
+    @Benchmark
+    public String nearAttractions() {
+        return JsonStream.serialize(nearAttractions);
+    }
+
+    @Benchmark
+    public String userRewards() {
+        return JsonStream.serialize(userRewards);
+    }
+
+    @Benchmark
+    public String currentLocationsMap(CurrentLocations currentLocations) {
+        return JsonStream.serialize(currentLocations.byUserIdString);
+    }
+
+    @Benchmark
+    public void currentLocationsStreamed(CurrentLocations currentLocations) throws IOException {
+        CurrentLocationsJsonWriter writer = new CurrentLocationsJsonWriter(OutputStream.nullOutputStream());
+        currentLocations.byUserId.forEach(writer);
+        writer.finish(null);
+    }
+}
@@ -0,0 +1,69 @@
+package tourGuide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.dto.NearAttractionDTO;
+import tourGuide.helper.InternalTestHelper;
+import tourGuide.service.RewardsService;
+import tourGuide.service.TourGuideService;
+
+/**
+ * TourGuideService.getNearByAttractions for a new user on every call, so every reward lookup misses the cache
+ * and pays rewardCentralLatencyMicros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NearbyAttractionsBenchmark {
+
+    @Param({"0", "1000"})
+    public long rewardCentralLatencyMicros;
+
+    private TourGuideService tourGuideService;
+
+    @Setup
+    public void setUp() {
+        InternalTestHelper.setInternalUserNumber(0);
+        StubGpsUtil gpsUtil = new StubGpsUtil(0, TimeUnit.NANOSECONDS);
+        RewardsService rewardsService = new RewardsService(gpsUtil,
+                new StubRewardCentral(rewardCentralLatencyMicros, TimeUnit.MICROSECONDS));
+        tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+        tourGuideService.tracker.stopTracking();
+    }
+
+    @TearDown
+    public void tearDown() {
+        tourGuideService.getGpsExecutor().shutdown();
+        tourGuideService.getTripPricerExecutor().shutdown();
+        tourGuideService.getRewardsService().getRewardCentralExecutor().shutdown();
+    }
+
+    @Benchmark
+    public List<NearAttractionDTO> getNearByAttractions() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Location location = new Location(random.nextDouble(-85, 85), random.nextDouble(-180, 180));
+        return tourGuideService.getNearByAttractions(new VisitedLocation(UUID.randomUUID(), location, new Date()));
+    }
+}
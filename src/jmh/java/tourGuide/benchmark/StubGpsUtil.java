@@ -0,0 +1,47 @@
+package tourGuide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * In process gpsUtil: no rate limiter and no random sleep, a fixed latency instead.
+ * The attractions are the ones of gpsUtil, loaded once, so the same catalog is served on every call.
+ */
+public class StubGpsUtil extends GpsUtil {
+    private static final List<Attraction> ATTRACTIONS = List.copyOf(new GpsUtil().getAttractions());
+
+    private final long latencyNanos;
+
+    public StubGpsUtil(long latency, TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        pause(latencyNanos);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Location location = new Location(random.nextDouble(-85, 85), random.nextDouble(-180, 180));
+        return new VisitedLocation(userId, location, new Date());
+    }
+
+    @Override
+    public List<Attraction> getAttractions() {
+        pause(latencyNanos);
+        return ATTRACTIONS;
+    }
+
+    static void pause(long nanos) {
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package tourGuide.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * In process RewardCentral: a fixed latency instead of a random sleep of up to 1 second,
+ * and points derived from the ids, so repeated runs do the same work.
+ */
+public class StubRewardCentral extends RewardCentral {
+    private final long latencyNanos;
+
+    public StubRewardCentral(long latency, TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        StubGpsUtil.pause(latencyNanos);
+        return 1 + Math.floorMod(attractionId.hashCode() ^ userId.hashCode(), 1000);
+    }
+}
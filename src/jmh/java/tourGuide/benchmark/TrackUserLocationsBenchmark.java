@@ -0,0 +1,88 @@
+package tourGuide.benchmark;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.VisitedLocation;
+import tourGuide.cache.TripPricerCache;
+import tourGuide.concurrency.ExecutionMode;
+import tourGuide.helper.InternalTestHelper;
+import tourGuide.location.MovementModel;
+import tourGuide.location.SimulatedLocationSource;
+import tourGuide.service.RewardsService;
+import tourGuide.service.TourGuideService;
+import tourGuide.user.User;
+import tripPricer.TripPricer;
+
+/**
+ * TourGuideService.trackUserLocations of userCount users against the simulated location source, cut in requests of
+ * batchSize users as the Tracker does: a batch of 1 is one round trip of latencyMillis per user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrackUserLocationsBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int batchSize;
+
+    @Param({"1000"})
+    public int userCount;
+
+    @Param({"10"})
+    public long latencyMillis;
+
+    private TourGuideService tourGuideService;
+    private List<User> users;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SimulatedLocationSource locationSource = new SimulatedLocationSource(42, Duration.ofMillis(latencyMillis),
+                Duration.ZERO, 0, MovementModel.randomWalk(1), batchSize);
+        RewardsService rewardsService = new RewardsService(new StubGpsUtil(0, TimeUnit.NANOSECONDS),
+                new StubRewardCentral(0, TimeUnit.NANOSECONDS));
+        InternalTestHelper.setInternalUserNumber(0);
+        tourGuideService = new TourGuideService(locationSource, rewardsService,
+                new TripPricerCache(new TripPricer()), ExecutionMode.PLATFORM_THREADS);
+        tourGuideService.tracker.stopTracking();
+        users = IntStream.range(0, userCount)
+                .mapToObj(i -> new User(UUID.randomUUID(), "benchmark" + i, "000", "benchmark@tourGuide.com"))
+                .toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        tourGuideService.getRewardsService().getRewardCentralExecutor().shutdown();
+    }
+
+    @Benchmark
+    public List<VisitedLocation> trackUserLocations() {
+        List<CompletableFuture<VisitedLocation>> trackings = new ArrayList<>(users.size());
+        for (int from = 0; from < users.size(); from += batchSize) {
+            trackings.addAll(tourGuideService.trackUserLocations(users.subList(from, Math.min(from + batchSize, users.size()))));
+        }
+        return trackings.stream().map(CompletableFuture::join).toList();
+    }
+}
@@ -2,30 +2,46 @@ package tourGuide;
 
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import gpsUtil.location.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.jsoniter.output.JsonStream;
 
-import gpsUtil.location.VisitedLocation;
+import tourGuide.dto.NearAttractionDTO;
+import tourGuide.exception.RequestTimeoutException;
+import tourGuide.helper.CurrentLocationsJsonWriter;
 import tourGuide.service.TourGuideService;
 import tourGuide.user.User;
-import tripPricer.Provider;
 
 @RestController
 public class TourGuideController {
     private static final Logger logger = LoggerFactory.getLogger(TourGuideService.class);
+    // bulk requests report one result or error per user, see BulkResultDTO
+    private static final int MAX_BULK_USERS = 10_000;
 
     private final TourGuideService tourGuideService;
+    private final long requestTimeoutMillis;
 
     @Autowired
-    public TourGuideController(TourGuideService tourGuideService) {
+    public TourGuideController(TourGuideService tourGuideService,
+                               @Value("${tourGuide.request.timeoutMillis:10000}") long requestTimeoutMillis) {
         this.tourGuideService = tourGuideService;
+        this.requestTimeoutMillis = requestTimeoutMillis;
     }
 
     @RequestMapping("/")
@@ -34,18 +50,20 @@ public class TourGuideController {
     }
 
     @RequestMapping(value = "/getLocation", produces = "application/json")
-    public String getLocation(@RequestParam String userName) throws ExecutionException, InterruptedException {
-        VisitedLocation visitedLocation = tourGuideService.getUserLocation(getUser(userName));
-        logger.info("Get successfully the location of an user, username: {}, from TourGuideController", userName);
-        return JsonStream.serialize(visitedLocation.location);
+    public CompletableFuture<String> getLocation(@RequestParam String userName) {
+        return withTimeout(tourGuideService.getUserLocationAsync(getUser(userName)), "getLocation")
+                .thenApply(visitedLocation -> {
+                    logger.info("Get successfully the location of an user, username: {}, from TourGuideController", userName);
+                    return JsonStream.serialize(visitedLocation.location);
+                });
     }
 
     @RequestMapping("/getNearbyAttractions")
-    public String getNearbyAttractions(@RequestParam String userName) throws ExecutionException, InterruptedException {
+    public CompletableFuture<String> getNearbyAttractions(@RequestParam String userName) {
         logger.debug("getNearByAttractions starts here.");
-        VisitedLocation visitedLocation = tourGuideService.getUserLocation(getUser(userName));
-
-        return JsonStream.serialize(tourGuideService.getNearByAttractions(visitedLocation));
+        CompletableFuture<List<NearAttractionDTO>> nearAttractions = tourGuideService.getUserLocationAsync(getUser(userName))
+                .thenCompose(tourGuideService::getNearByAttractionsAsync);
+        return withTimeout(nearAttractions, "getNearbyAttractions").thenApply(JsonStream::serialize);
     }
 
     @RequestMapping("/getRewards")
@@ -53,7 +71,7 @@ public class TourGuideController {
         return JsonStream.serialize(tourGuideService.getUserRewards(getUser(userName)));
     }
 
-    @RequestMapping(value = "/getAllCurrentLocations", produces = "application/json")
+    @RequestMapping(value = "/getAllCurrentLocations", produces = "application/json", params = {"!stream", "!cursor", "!limit"})
     public String getAllCurrentLocations() {
         logger.debug("getAllCurrentLocations method starts here, form TourGuideController");
 
@@ -62,10 +80,91 @@ public class TourGuideController {
         return JsonStream.serialize(allCurrentLocations);
     }
 
+    /**
+     * Streaming version of /getAllCurrentLocations, selected by any of the stream, cursor or limit parameters.
+     * The locations are written to the response while the users are iterated, a page of limit locations at most;
+     * the returned nextCursor is the cursor of the next page, null after the last page.
+     *
+     * @param cursor the nextCursor of the previous page, absent for the first page
+     * @param limit  the maximum number of locations of the page, every location if absent
+     */
+    @RequestMapping(value = "/getAllCurrentLocations", produces = "application/json")
+    public ResponseEntity<StreamingResponseBody> streamAllCurrentLocations(@RequestParam(required = false) UUID cursor,
+                                                                           @RequestParam(required = false) Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be at least 1, got " + limit);
+        }
+        int pageSize = limit == null ? Integer.MAX_VALUE : limit;
+        StreamingResponseBody body = outputStream -> {
+            CurrentLocationsJsonWriter writer = new CurrentLocationsJsonWriter(outputStream);
+            UUID nextCursor = tourGuideService.forEachCurrentLocation(cursor, pageSize, writer);
+            writer.finish(nextCursor);
+            logger.info("Current locations streamed successfully, cursor: {}, next cursor: {}, from TourGuideController", cursor, nextCursor);
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Last location of the users that moved since the given version, for clients polling the locations.
+     * The response is {"locations":{...},"version":..}, the version is the since parameter of the next poll.
+     *
+     * @param since the version of the previous response, 0 (the default) for every location
+     */
+    @RequestMapping(value = "/getCurrentLocationChanges", produces = "application/json")
+    public ResponseEntity<StreamingResponseBody> getCurrentLocationChanges(@RequestParam(defaultValue = "0") long since) {
+        StreamingResponseBody body = outputStream -> {
+            CurrentLocationsJsonWriter writer = new CurrentLocationsJsonWriter(outputStream);
+            long version = tourGuideService.forEachLocationChange(since, writer);
+            writer.finishDelta(version);
+            logger.debug("Location changes since version {} streamed, new version: {}", since, version);
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     @RequestMapping("/getTripDeals")
-    public String getTripDeals(@RequestParam String userName) {
-        List<Provider> providers = tourGuideService.getTripDeals(getUser(userName));
-        return JsonStream.serialize(providers);
+    public CompletableFuture<String> getTripDeals(@RequestParam String userName) {
+        return withTimeout(tourGuideService.getTripDealsAsync(getUser(userName)), "getTripDeals")
+                .thenApply(JsonStream::serialize);
+    }
+
+    @RequestMapping(value = "/bulk/getLocations", method = RequestMethod.POST, produces = "application/json")
+    public CompletableFuture<String> getBulkLocations(@RequestBody List<String> userNames) {
+        checkBulkSize(userNames);
+        return tourGuideService.getUserLocationsAsync(userNames, requestTimeoutMillis).thenApply(JsonStream::serialize);
+    }
+
+    @RequestMapping(value = "/bulk/getRewards", method = RequestMethod.POST, produces = "application/json")
+    public String getBulkRewards(@RequestBody List<String> userNames) {
+        checkBulkSize(userNames);
+        return JsonStream.serialize(tourGuideService.getUserRewards(userNames));
+    }
+
+    @RequestMapping(value = "/bulk/getNearbyAttractions", method = RequestMethod.POST, produces = "application/json")
+    public CompletableFuture<String> getBulkNearbyAttractions(@RequestBody List<String> userNames) {
+        checkBulkSize(userNames);
+        return tourGuideService.getNearByAttractionsAsync(userNames, requestTimeoutMillis).thenApply(JsonStream::serialize);
+    }
+
+    private static void checkBulkSize(List<String> userNames) {
+        if (userNames.size() > MAX_BULK_USERS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "A bulk request takes " + MAX_BULK_USERS + " usernames at most, got " + userNames.size());
+        }
+    }
+
+    /**
+     * The servlet thread is released as soon as the future is returned, this bounds the time the response may take
+     * once the downstream services (gpsUtil, RewardCentral, TripPricer) are slow: a late request gets a 504.
+     */
+    private <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, String operation) {
+        return future.orTimeout(requestTimeoutMillis, TimeUnit.MILLISECONDS).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof TimeoutException) {
+                logger.warn("{} timed out after {} ms", operation, requestTimeoutMillis);
+                throw new RequestTimeoutException(operation + " timed out after " + requestTimeoutMillis + " ms", cause);
+            }
+            throw cause instanceof RuntimeException runtimeException ? runtimeException : new CompletionException(cause);
+        });
     }
 
     private User getUser(String userName) {
@@ -1,36 +1,280 @@
 package tourGuide;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import gpsUtil.GpsUtil;
 import rewardCentral.RewardCentral;
+import tripPricer.TripPricer;
+import tourGuide.attraction.AttractionCatalog;
+import tourGuide.cache.ExpiringCache;
+import tourGuide.cache.RewardPointsCache;
+import tourGuide.cache.TripPricerCache;
+import tourGuide.concurrency.DownstreamExecutor;
+import tourGuide.concurrency.ExecutionMode;
+import tourGuide.location.GpsUtilLocationSource;
+import tourGuide.location.LocationSource;
+import tourGuide.location.MovementModel;
+import tourGuide.location.SimulatedLocationSource;
+import tourGuide.persistence.LocationJournal;
+import tourGuide.persistence.UserSnapshotStore;
 import tourGuide.service.RewardsService;
+import tourGuide.service.TourGuideService;
+import tourGuide.tracker.Tracker;
+import tourGuide.tracker.TrackerMetrics;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class TourGuideModule {
-	
+
+	@Value("${" + ExecutionMode.PROPERTY + ":PLATFORM_THREADS}")
+	private ExecutionMode executionMode;
+
+	@Value("${tourGuide.attractionCatalog.refreshIntervalSeconds:3600}")
+	private long attractionCatalogRefreshIntervalSeconds;
+
+	@Value("${tourGuide.rewardPointsCache.timeToLiveSeconds:1800}")
+	private long rewardPointsCacheTimeToLiveSeconds;
+
+	@Value("${tourGuide.rewardPointsCache.maximumSize:500000}")
+	private int rewardPointsCacheMaximumSize;
+
+	@Value("${tourGuide.tripPricerCache.timeToLiveSeconds:600}")
+	private long tripPricerCacheTimeToLiveSeconds;
+
+	@Value("${tourGuide.tripPricerCache.maximumSize:100000}")
+	private int tripPricerCacheMaximumSize;
+
+	@Value("${tourGuide.snapshot.path:}")
+	private String snapshotPath;
+
+	@Value("${tourGuide.snapshot.intervalSeconds:300}")
+	private long snapshotIntervalSeconds;
+
+	@Value("${tourGuide.journal.directory:}")
+	private String journalDirectory;
+
+	@Value("${tourGuide.journal.segmentSizeMegabytes:64}")
+	private long journalSegmentSizeMegabytes;
+
+	@Value("${tourGuide.journal.syncIntervalMillis:100}")
+	private long journalSyncIntervalMillis;
+
+	@Value("${tourGuide.journal.queueCapacity:65536}")
+	private int journalQueueCapacity;
+
+	@Value("${tourGuide.locationSource:gpsUtil}")
+	private String locationSource;
+
+	@Value("${tourGuide.simulator.seed:0}")
+	private long simulatorSeed;
+
+	@Value("${tourGuide.simulator.latencyMillis:100}")
+	private long simulatorLatencyMillis;
+
+	@Value("${tourGuide.simulator.jitterMillis:50}")
+	private long simulatorJitterMillis;
+
+	@Value("${tourGuide.simulator.errorRate:0}")
+	private double simulatorErrorRate;
+
+	@Value("${tourGuide.simulator.stepMiles:1}")
+	private double simulatorStepMiles;
+
+	@Value("${tourGuide.simulator.batchSize:100}")
+	private int simulatorBatchSize;
+
+	@Value("${tourGuide.locationHistory.retention:1000}")
+	private int locationHistoryRetention;
+
 	@Bean
 	public GpsUtil getGpsUtil() {
 		return new GpsUtil();
 	}
-	
+
+	/**
+	 * gpsUtil, or the local simulator when tourGuide.locationSource=simulator
+	 */
+	@Bean
+	public LocationSource getLocationSource() {
+		if ("simulator".equalsIgnoreCase(locationSource)) {
+			return new SimulatedLocationSource(simulatorSeed, Duration.ofMillis(simulatorLatencyMillis),
+					Duration.ofMillis(simulatorJitterMillis), simulatorErrorRate,
+					simulatorStepMiles > 0 ? MovementModel.randomWalk(simulatorStepMiles) : MovementModel.uniform(),
+					simulatorBatchSize);
+		}
+		return new GpsUtilLocationSource(getGpsUtil());
+	}
+
 	@Bean
 	public RewardsService getRewardsService() {
-		return new RewardsService(getGpsUtil(), getRewardCentral());
+		return new RewardsService(getAttractionCatalog(), getRewardPointsCache(), executionMode);
 	}
-	
+
+	@Bean
+	public AttractionCatalog getAttractionCatalog() {
+		AttractionCatalog attractionCatalog = new AttractionCatalog(getGpsUtil());
+		attractionCatalog.startRefresh(Duration.ofSeconds(attractionCatalogRefreshIntervalSeconds));
+		return attractionCatalog;
+	}
+
 	@Bean
 	public RewardCentral getRewardCentral() {
 		return new RewardCentral();
 	}
 
+	@Bean
+	public RewardPointsCache getRewardPointsCache() {
+		return new RewardPointsCache(getRewardCentral(),
+				Duration.ofSeconds(rewardPointsCacheTimeToLiveSeconds), rewardPointsCacheMaximumSize);
+	}
+
+	@Bean
+	public TripPricerCache getTripPricerCache() {
+		return new TripPricerCache(new TripPricer(),
+				Duration.ofSeconds(tripPricerCacheTimeToLiveSeconds), tripPricerCacheMaximumSize);
+	}
+
+	@Bean
+	public MeterBinder getRewardPointsCacheMetrics() {
+		return registry -> bindCache(registry, "tourGuide.rewardPointsCache", getRewardPointsCache().getCache());
+	}
+
+	@Bean
+	public MeterBinder getTripPricerCacheMetrics() {
+		return registry -> bindCache(registry, "tourGuide.tripPricerCache", getTripPricerCache().getCache());
+	}
+
+	private static void bindCache(MeterRegistry registry, String name, ExpiringCache<?, ?> cache) {
+		FunctionCounter.builder(name + ".hits", cache, ExpiringCache::getHitCount).register(registry);
+		FunctionCounter.builder(name + ".misses", cache, ExpiringCache::getMissCount).register(registry);
+		FunctionCounter.builder(name + ".evictions", cache, ExpiringCache::getEvictionCount).register(registry);
+		Gauge.builder(name + ".size", cache, ExpiringCache::size).register(registry);
+	}
+
+	@Bean
+	public MeterBinder getTrackerMetrics(TourGuideService tourGuideService) {
+		Tracker tracker = tourGuideService.tracker;
+		TrackerMetrics metrics = tracker.getMetrics();
+		return registry -> {
+			TimeGauge.builder("tourGuide.tracker.cycle.duration", metrics, TimeUnit.SECONDS, TrackerMetrics::getLastCycleDurationSeconds)
+					.description("Time from the start of the last completed cycle to the completion of its last track")
+					.register(registry);
+			Gauge.builder("tourGuide.tracker.cycle.users", metrics, TrackerMetrics::getLastCycleUserCount).register(registry);
+			FunctionCounter.builder("tourGuide.tracker.cycles", metrics, TrackerMetrics::getCompletedCycles).register(registry);
+			FunctionCounter.builder("tourGuide.tracker.cycles.late", metrics, TrackerMetrics::getLateCycles)
+					.description("Cycles that took longer than the polling interval")
+					.register(registry);
+			FunctionCounter.builder("tourGuide.tracker.tracks", metrics, TrackerMetrics::getSuccessfulTracks)
+					.tag("result", "success").register(registry);
+			FunctionCounter.builder("tourGuide.tracker.tracks", metrics, TrackerMetrics::getFailedTracks)
+					.tag("result", "failure").register(registry);
+			TimeGauge.builder("tourGuide.tracker.staleness.max", metrics, TimeUnit.SECONDS, TrackerMetrics::getMaxStalenessSeconds)
+					.description("Now minus the last successful track, for the least recently tracked user")
+					.register(registry);
+			Timer staleness = Timer.builder("tourGuide.tracker.staleness")
+					.description("Now minus the last successful track, sampled for every user just before it is tracked again")
+					.publishPercentiles(0.5, 0.9, 0.99)
+					.publishPercentileHistogram()
+					.register(registry);
+			metrics.setStalenessListener(stalenessMillis -> staleness.record(stalenessMillis, TimeUnit.MILLISECONDS));
+			Gauge.builder("tourGuide.tracker.users.stale", metrics, TrackerMetrics::getStaleUserCount)
+					.description("Users not tracked for more than the polling interval")
+					.register(registry);
+			Gauge.builder("tourGuide.tracker.inFlight", tracker, Tracker::getInFlightCount).register(registry);
+			bindExecutor(registry, tourGuideService.getGpsExecutor());
+			bindExecutor(registry, tourGuideService.getTripPricerExecutor());
+			bindExecutor(registry, tourGuideService.getRewardsService().getRewardCentralExecutor());
+		};
+	}
+
+	private static void bindExecutor(MeterRegistry registry, DownstreamExecutor executor) {
+		Gauge.builder("tourGuide.executor.queued", executor, DownstreamExecutor::getQueuedTaskCount)
+				.tag("dependency", executor.getName()).register(registry);
+		Gauge.builder("tourGuide.executor.active", executor, DownstreamExecutor::getActiveTaskCount)
+				.tag("dependency", executor.getName()).register(registry);
+		Gauge.builder("tourGuide.executor.limit", executor, DownstreamExecutor::getCurrentLimit)
+				.description("Calls allowed at once, adaptive limits follow the latency of the dependency")
+				.tag("dependency", executor.getName()).register(registry);
+		FunctionCounter.builder("tourGuide.executor.rejected", executor, DownstreamExecutor::getRejectedTaskCount)
+				.description("Calls rejected because tourGuide.executor.maxQueuedTasks calls were waiting")
+				.tag("dependency", executor.getName()).register(registry);
+	}
+
+	/**
+	 * Open the journal, its records are replayed by getUserSnapshotStore after the snapshot, or here without snapshot
+	 */
+	@Bean(destroyMethod = "close")
+	@ConditionalOnProperty("tourGuide.journal.directory")
+	public LocationJournal getLocationJournal(TourGuideService tourGuideService) throws IOException {
+		LocationJournal journal = new LocationJournal(Path.of(journalDirectory),
+				journalSegmentSizeMegabytes * 1024 * 1024, journalSyncIntervalMillis, journalQueueCapacity);
+		if (snapshotPath.isEmpty()) {
+			replayJournal(journal, tourGuideService);
+		}
+		return journal;
+	}
+
+	@Bean
+	@ConditionalOnProperty("tourGuide.journal.directory")
+	public MeterBinder getLocationJournalMetrics(LocationJournal journal) {
+		return registry -> {
+			Gauge.builder("tourGuide.journal.queued", journal, LocationJournal::getQueuedRecords)
+					.description("Records waiting for the journal writer").register(registry);
+			FunctionCounter.builder("tourGuide.journal.appends.blocked", journal, LocationJournal::getBlockedAppends)
+					.description("Appends that waited for room in a full journal queue").register(registry);
+			FunctionCounter.builder("tourGuide.journal.syncs", journal, LocationJournal::getSyncs).register(registry);
+		};
+	}
+
+	/**
+	 * Restore the users of the snapshot if there is one, and the journal records written after it,
+	 * then write a snapshot every interval and on shutdown
+	 */
+	@Bean(destroyMethod = "shutdown")
+	@ConditionalOnProperty("tourGuide.snapshot.path")
+	public UserSnapshotStore getUserSnapshotStore(TourGuideService tourGuideService, ObjectProvider<LocationJournal> journal) {
+		UserSnapshotStore store = new UserSnapshotStore(Path.of(snapshotPath), locationHistoryRetention);
+		try {
+			tourGuideService.restoreUsers(store.read(getAttractionCatalog().getSnapshot()));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot restore the users from " + snapshotPath, e);
+		}
+		journal.ifAvailable(locationJournal -> {
+			replayJournal(locationJournal, tourGuideService);
+			store.setJournal(locationJournal);
+		});
+		store.startPeriodicSnapshots(tourGuideService::getUsers, Duration.ofSeconds(snapshotIntervalSeconds));
+		return store;
+	}
+
+	private void replayJournal(LocationJournal journal, TourGuideService tourGuideService) {
+		try {
+			tourGuideService.replayJournal(journal, getAttractionCatalog().getSnapshot());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot replay the location journal " + journalDirectory, e);
+		}
+	}
+
 	@Bean
 	public Locale getLocale() {
 		Locale.setDefault(new Locale("en", "US"));
 		return Locale.getDefault();
 	}
-	
+
 }
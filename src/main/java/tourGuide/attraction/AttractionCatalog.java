@@ -0,0 +1,110 @@
+package tourGuide.attraction;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+
+/**
+ * Holds the current AttractionSnapshot.
+ * The catalog is loaded from gpsUtil once, then optionally refreshed in the background:
+ * a refresh builds a whole new snapshot and swaps it atomically, readers never see a partial catalog.
+ */
+public class AttractionCatalog {
+    private final Logger logger = LoggerFactory.getLogger(AttractionCatalog.class);
+    private final GpsUtil gpsUtil;
+    private final List<Consumer<AttractionSnapshot>> changeListeners = new CopyOnWriteArrayList<>();
+    private volatile AttractionSnapshot snapshot;
+    private ScheduledExecutorService refreshExecutorService;
+
+    public AttractionCatalog(GpsUtil gpsUtil) {
+        this.gpsUtil = gpsUtil;
+        this.snapshot = new AttractionSnapshot(gpsUtil.getAttractions(), 1);
+        logger.debug("Attraction catalog loaded with {} attractions", snapshot.size());
+    }
+
+    public AttractionSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Register a listener called after each refresh that changed the catalog
+     */
+    public void addChangeListener(Consumer<AttractionSnapshot> listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Reload the catalog from gpsUtil.
+     * gpsUtil gives a new id to every attraction on each call, so unchanged attractions keep the instance
+     * (and the id) of the current snapshot: ids stay valid across refreshes, i.e. as reward cache keys.
+     *
+     * @return true if the catalog changed
+     */
+    public synchronized boolean refresh() {
+        AttractionSnapshot current = snapshot;
+        Map<String, Attraction> currentByName = new HashMap<>();
+        current.getAttractions().forEach(attraction -> currentByName.put(attraction.attractionName, attraction));
+
+        boolean changed = false;
+        List<Attraction> attractions = new ArrayList<>();
+        for (Attraction loaded : gpsUtil.getAttractions()) {
+            Attraction known = currentByName.remove(loaded.attractionName);
+            if (known != null && known.latitude == loaded.latitude && known.longitude == loaded.longitude) {
+                attractions.add(known);
+            } else {
+                attractions.add(loaded);
+                changed = true;
+            }
+        }
+        if (!changed && currentByName.isEmpty()) {
+            return false;
+        }
+
+        AttractionSnapshot refreshed = new AttractionSnapshot(attractions, current.getVersion() + 1);
+        snapshot = refreshed;
+        logger.info("Attraction catalog refreshed, version: {}, {} attractions", refreshed.getVersion(), refreshed.size());
+        changeListeners.forEach(listener -> listener.accept(refreshed));
+        return true;
+    }
+
+    /**
+     * Refresh the catalog in a background thread, every interval
+     */
+    public synchronized void startRefresh(Duration interval) {
+        if (refreshExecutorService != null) {
+            return;
+        }
+        refreshExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attraction-catalog-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshExecutorService.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                logger.error("Attraction catalog refresh failed, keeping version {}", snapshot.getVersion(), e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (refreshExecutorService != null) {
+            refreshExecutorService.shutdownNow();
+            refreshExecutorService = null;
+        }
+    }
+}
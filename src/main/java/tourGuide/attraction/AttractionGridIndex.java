@@ -0,0 +1,110 @@
+package tourGuide.attraction;
+
+import java.util.function.IntConsumer;
+
+import gpsUtil.location.Location;
+
+/**
+ * Lat/lon grid over the attraction catalog.
+ * Attractions are bucketed in 1 degree cells (stored CSR style: one offset array, one attraction index array),
+ * so a proximity query only visits the cells overlapping the bounding box of the search circle.
+ * The index only knows positions, the exact distance check is done by the AttractionSnapshot.
+ */
+public class AttractionGridIndex {
+    // same constants as RewardsService.getDistance: 60 nautical miles per degree of arc
+    static final double STATUTE_MILES_PER_DEGREE = 60 * 1.15077945;
+    static final double MAX_DISTANCE_MILES = 180 * STATUTE_MILES_PER_DEGREE;
+    private static final double CELL_DEGREES = 1.0;
+    private static final int ROWS = (int) (180 / CELL_DEGREES);
+    private static final int COLUMNS = (int) (360 / CELL_DEGREES);
+
+    private final int[] attractionIndexes;
+    private final int[] cellStart;
+
+    /**
+     * Build the index
+     *
+     * @param latitudes  latitude of each attraction, in degrees
+     * @param longitudes longitude of each attraction, in degrees
+     */
+    public AttractionGridIndex(double[] latitudes, double[] longitudes) {
+        int[] cells = new int[latitudes.length];
+        cellStart = new int[ROWS * COLUMNS + 1];
+        for (int i = 0; i < latitudes.length; i++) {
+            cells[i] = cellOf(latitudes[i], longitudes[i]);
+            cellStart[cells[i] + 1]++;
+        }
+        for (int cell = 0; cell < ROWS * COLUMNS; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        attractionIndexes = new int[latitudes.length];
+        int[] next = new int[ROWS * COLUMNS];
+        for (int i = 0; i < latitudes.length; i++) {
+            attractionIndexes[cellStart[cells[i]] + next[cells[i]]++] = i;
+        }
+    }
+
+    /**
+     * Visit the index of every attraction in the cells that may hold a point within radiusMiles of the location.
+     * Candidates still have to be checked against the exact distance.
+     *
+     * @param location    the center of the search
+     * @param radiusMiles the search radius, in statute miles
+     * @param consumer    called once per candidate attraction index
+     */
+    public void forEachCandidate(Location location, double radiusMiles, IntConsumer consumer) {
+        forEachCandidate(location.latitude, location.longitude, radiusMiles, consumer);
+    }
+
+    /**
+     * Same as forEachCandidate(Location, double, IntConsumer), for a location held in primitive fields
+     */
+    public void forEachCandidate(double latitude, double longitude, double radiusMiles, IntConsumer consumer) {
+        if (radiusMiles >= MAX_DISTANCE_MILES) {
+            for (int attractionIndex : attractionIndexes) {
+                consumer.accept(attractionIndex);
+            }
+            return;
+        }
+        double radiusDegrees = radiusMiles / STATUTE_MILES_PER_DEGREE;
+        double minLatitude = latitude - radiusDegrees;
+        double maxLatitude = latitude + radiusDegrees;
+        int firstRow = rowOf(minLatitude);
+        int lastRow = rowOf(maxLatitude);
+
+        int firstColumn = 0;
+        int columnCount = COLUMNS;
+        if (minLatitude > -90 && maxLatitude < 90) {
+            // bounding box of a circle on the sphere: the longitude span widens with the latitude of the center
+            double sinRadius = Math.sin(Math.toRadians(radiusDegrees));
+            double cosLatitude = Math.cos(Math.toRadians(latitude));
+            if (sinRadius < cosLatitude) {
+                double radiusLongitude = Math.toDegrees(Math.asin(sinRadius / cosLatitude));
+                firstColumn = columnOf(longitude - radiusLongitude);
+                columnCount = Math.min(COLUMNS, columnOf(longitude + radiusLongitude) - firstColumn + 1);
+            }
+        }
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int i = 0; i < columnCount; i++) {
+                int cell = row * COLUMNS + Math.floorMod(firstColumn + i, COLUMNS);
+                for (int a = cellStart[cell]; a < cellStart[cell + 1]; a++) {
+                    consumer.accept(attractionIndexes[a]);
+                }
+            }
+        }
+    }
+
+    private static int cellOf(double latitude, double longitude) {
+        return rowOf(latitude) * COLUMNS + Math.floorMod(columnOf(longitude), COLUMNS);
+    }
+
+    private static int rowOf(double latitude) {
+        int row = (int) Math.floor((latitude + 90) / CELL_DEGREES);
+        return Math.max(0, Math.min(ROWS - 1, row));
+    }
+
+    private static int columnOf(double longitude) {
+        return (int) Math.floor((longitude + 180) / CELL_DEGREES);
+    }
+}
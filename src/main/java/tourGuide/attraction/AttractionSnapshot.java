@@ -0,0 +1,233 @@
+package tourGuide.attraction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Immutable, array backed copy of the attraction catalog.
+ * The radians, sin(latitude) and cos(latitude) of every attraction are computed once when the snapshot is built,
+ * so a distance to an attraction only costs the trigonometry of the user location.
+ * Proximity searches go through the DistanceKernel: the candidate cells of the grid, then a dot product per attraction.
+ * Nearest searches rank the cached candidates of the location's small cell with a bounded heap: many users are in
+ * the same cities, the grid is only scanned on the first search of a cell.
+ */
+public class AttractionSnapshot {
+    private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+    private static final double INITIAL_NEAREST_RADIUS_MILES = 100;
+    private static final double NEAREST_CELL_DEGREES = 0.1;
+    private static final int NEAREST_CELL_ROWS = (int) Math.round(180 / NEAREST_CELL_DEGREES);
+    private static final int NEAREST_CELL_COLUMNS = (int) Math.round(360 / NEAREST_CELL_DEGREES);
+    private static final int MAX_NEAREST_CELLS = 100_000;
+
+    private final long version;
+    private final Attraction[] attractions;
+    private final List<Attraction> attractionList;
+    private final double[] longitudeRadians;
+    private final double[] sinLatitude;
+    private final double[] cosLatitude;
+    private final Map<UUID, Integer> indexById;
+    private final AttractionGridIndex gridIndex;
+    private final DistanceKernel distanceKernel;
+    // by (count, cell row, cell column), the snapshot is immutable so the entries never go stale
+    private final ConcurrentMap<Long, int[]> nearestCandidatesByCell = new ConcurrentHashMap<>();
+
+    public AttractionSnapshot(List<Attraction> attractions, long version) {
+        this.version = version;
+        this.attractions = attractions.toArray(new Attraction[0]);
+        this.attractionList = Collections.unmodifiableList(Arrays.asList(this.attractions));
+
+        int size = this.attractions.length;
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        longitudeRadians = new double[size];
+        sinLatitude = new double[size];
+        cosLatitude = new double[size];
+        Map<UUID, Integer> ids = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Attraction attraction = this.attractions[i];
+            latitudes[i] = attraction.latitude;
+            longitudes[i] = attraction.longitude;
+            double latitudeRadians = Math.toRadians(attraction.latitude);
+            longitudeRadians[i] = Math.toRadians(attraction.longitude);
+            sinLatitude[i] = Math.sin(latitudeRadians);
+            cosLatitude[i] = Math.cos(latitudeRadians);
+            ids.put(attraction.attractionId, i);
+        }
+        indexById = Collections.unmodifiableMap(ids);
+        gridIndex = new AttractionGridIndex(latitudes, longitudes);
+        distanceKernel = new DistanceKernel(latitudes, longitudes);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return attractions.length;
+    }
+
+    public Attraction get(int index) {
+        return attractions[index];
+    }
+
+    /**
+     * @return A read only view of the attractions, nothing is copied
+     */
+    public List<Attraction> getAttractions() {
+        return attractionList;
+    }
+
+    /**
+     * @return the index of the attraction in this snapshot, -1 if unknown
+     */
+    public int indexOf(UUID attractionId) {
+        return indexById.getOrDefault(attractionId, -1);
+    }
+
+    public DistanceKernel getDistanceKernel() {
+        return distanceKernel;
+    }
+
+    /**
+     * Distance in statute miles between the attraction and the location, same formula (and result) as RewardsService.getDistance
+     */
+    public double getDistance(int index, Location location) {
+        double latitude = Math.toRadians(location.latitude);
+        return getDistance(index, Math.sin(latitude), Math.cos(latitude), Math.toRadians(location.longitude));
+    }
+
+    private double getDistance(int index, double sinLat, double cosLat, double lonRadians) {
+        double angle = Math.acos(sinLatitude[index] * sinLat
+                + cosLatitude[index] * cosLat * Math.cos(longitudeRadians[index] - lonRadians));
+        double nauticalMiles = 60 * Math.toDegrees(angle);
+        return STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
+    }
+
+    /**
+     * Visit the index of every attraction whose distance to the location is not greater than radiusMiles
+     */
+    public void forEachWithin(Location location, double radiusMiles, IntConsumer consumer) {
+        forEachWithin(location.latitude, location.longitude, radiusMiles, consumer);
+    }
+
+    /**
+     * Same as forEachWithin(Location, double, IntConsumer), for a location held in primitive fields
+     */
+    public void forEachWithin(double latitude, double longitude, double radiusMiles, IntConsumer consumer) {
+        double[] unitVector = DistanceKernel.unitVector(latitude, longitude);
+        double minCosine = DistanceKernel.cosineOfRadius(radiusMiles);
+        gridIndex.forEachCandidate(latitude, longitude, radiusMiles, index -> {
+            // within the radius if the angle is small enough, i.e. its cosine large enough: no acos
+            if (distanceKernel.cosine(index, unitVector) >= minCosine) {
+                consumer.accept(index);
+            }
+        });
+    }
+
+    public List<Attraction> findWithin(Location location, double radiusMiles) {
+        List<Attraction> result = new ArrayList<>();
+        forEachWithin(location, radiusMiles, index -> result.add(attractions[index]));
+        return result;
+    }
+
+    /**
+     * Return the indexes of the count nearest attractions, closest first
+     */
+    public int[] findNearest(Location location, int count) {
+        return findNearest(location.latitude, location.longitude, count);
+    }
+
+    /**
+     * Same as findNearest(Location, int), for a location held in primitive fields.
+     * Only the candidates of the location's cell are ranked, with a heap of count entries.
+     */
+    public int[] findNearest(double latitude, double longitude, int count) {
+        if (count <= 0 || attractions.length == 0) {
+            return new int[0];
+        }
+        double[] unitVector = DistanceKernel.unitVector(latitude, longitude);
+        NearestHeap nearest = new NearestHeap(Math.min(count, attractions.length));
+        for (int index : getNearestCandidates(latitude, longitude, count)) {
+            nearest.offer(index, distanceKernel.cosine(index, unitVector));
+        }
+        return nearest.toSortedIndexes();
+    }
+
+    /**
+     * @return the number of cells whose nearest candidates are cached
+     */
+    public int getNearestCellCount() {
+        return nearestCandidatesByCell.size();
+    }
+
+    /**
+     * Candidates of the count nearest attractions of every location of a NEAREST_CELL_DEGREES cell, computed once per cell.
+     * The nearest attractions of a location p of the cell are within d(p) of p, d(p) being the distance of its count-th
+     * nearest attraction, and d(p) <= d(center) + r, r being the largest distance from the center to a location of
+     * the cell. So they are all within d(center) + 2r of the center (triangle inequality): the cell candidates.
+     */
+    private int[] getNearestCandidates(double latitude, double longitude, int count) {
+        int row = Math.min(NEAREST_CELL_ROWS - 1, Math.max(0, (int) Math.floor((latitude + 90) / NEAREST_CELL_DEGREES)));
+        int column = Math.floorMod((int) Math.floor((longitude + 180) / NEAREST_CELL_DEGREES), NEAREST_CELL_COLUMNS);
+        long cell = (long) count << 32 | (long) row << 16 | column;
+        int[] candidates = nearestCandidatesByCell.get(cell);
+        if (candidates == null) {
+            candidates = findNearestCandidates((row + 0.5) * NEAREST_CELL_DEGREES - 90,
+                    (column + 0.5) * NEAREST_CELL_DEGREES - 180, count);
+            // a full cache stops growing, the uncached cells are computed on every search
+            if (nearestCandidatesByCell.size() < MAX_NEAREST_CELLS) {
+                nearestCandidatesByCell.putIfAbsent(cell, candidates);
+            }
+        }
+        return candidates;
+    }
+
+    private int[] findNearestCandidates(double centerLatitude, double centerLongitude, int count) {
+        int[] nearest = searchNearest(centerLatitude, centerLongitude, count);
+        // r is at most the half cell along the meridian plus the half cell along the parallel
+        double radius = distanceKernel.distance(nearest[nearest.length - 1], centerLatitude, centerLongitude)
+                + 2 * NEAREST_CELL_DEGREES * DistanceKernel.STATUTE_MILES_PER_DEGREE + DistanceKernel.TOLERANCE_MILES;
+        IntStream.Builder candidates = IntStream.builder();
+        forEachWithin(centerLatitude, centerLongitude, radius, candidates::add);
+        return candidates.build().toArray();
+    }
+
+    /**
+     * The search radius grows until it holds enough attractions, so only the surrounding cells of the grid are scanned
+     */
+    private int[] searchNearest(double latitude, double longitude, int count) {
+        double[] unitVector = DistanceKernel.unitVector(latitude, longitude);
+        double radius = INITIAL_NEAREST_RADIUS_MILES;
+        while (true) {
+            NearestHeap nearest = new NearestHeap(Math.min(count, attractions.length));
+            // ranked by cosine, the larger the closer, the distances themselves aren't needed
+            double minCosine = DistanceKernel.cosineOfRadius(radius);
+            gridIndex.forEachCandidate(latitude, longitude, radius, index -> {
+                double cosine = distanceKernel.cosine(index, unitVector);
+                if (cosine >= minCosine) {
+                    nearest.offer(index, cosine);
+                }
+            });
+            if (nearest.isFull() || radius >= AttractionGridIndex.MAX_DISTANCE_MILES) {
+                return nearest.toSortedIndexes();
+            }
+            radius *= 4;
+        }
+    }
+
+    public List<Attraction> findNearestAttractions(Location location, int count) {
+        return Arrays.stream(findNearest(location, count)).mapToObj(index -> attractions[index]).toList();
+    }
+}
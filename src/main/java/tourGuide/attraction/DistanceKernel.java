@@ -0,0 +1,114 @@
+package tourGuide.attraction;
+
+/**
+ * Great circle distances from one location to a fixed set of points (the attractions).
+ * Each point is stored once as a unit vector (x, y, z) in three primitive arrays, so the cosine of the angle between a
+ * location and a point is a dot product: three multiply-adds, no trigonometry.
+ * A radius check compares that cosine to the cosine of the radius and never calls acos, the batch methods are plain
+ * loops over the arrays, without branches nor allocation, that the JIT can unroll and vectorize.
+ * The bounding box prefilter is the AttractionGridIndex: only the points of the cells around the circle are checked.
+ * <p>
+ * Tolerance: the dot product is the same spherical law of cosines as RewardsService.getDistance, only rounded differently.
+ * Distances match RewardsService.getDistance within {@link #TOLERANCE_MILES} statute miles, and a radius check only
+ * differs from "!(getDistance(..) > radius)" for a point at less than TOLERANCE_MILES from the circle.
+ * The cosine is clamped to [-1, 1], so a location on a point gets a distance of 0 where getDistance may return NaN.
+ */
+public class DistanceKernel {
+    // same constants as RewardsService.getDistance: 60 nautical miles per degree of arc
+    static final double STATUTE_MILES_PER_DEGREE = AttractionGridIndex.STATUTE_MILES_PER_DEGREE;
+    /**
+     * Largest difference with RewardsService.getDistance, in statute miles.
+     * Both formulas lose precision for points very close to each other: acos is ill-conditioned near 1,
+     * a rounding error of 1e-16 on the cosine is an angle of about 1.5e-8 radian, i.e. 1e-4 mile.
+     */
+    public static final double TOLERANCE_MILES = 1e-3;
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+
+    /**
+     * @param latitudes  latitude of each point, in degrees
+     * @param longitudes longitude of each point, in degrees
+     */
+    public DistanceKernel(double[] latitudes, double[] longitudes) {
+        int size = latitudes.length;
+        x = new double[size];
+        y = new double[size];
+        z = new double[size];
+        for (int i = 0; i < size; i++) {
+            double latitude = Math.toRadians(latitudes[i]);
+            double longitude = Math.toRadians(longitudes[i]);
+            x[i] = Math.cos(latitude) * Math.cos(longitude);
+            y[i] = Math.cos(latitude) * Math.sin(longitude);
+            z[i] = Math.sin(latitude);
+        }
+    }
+
+    public int size() {
+        return x.length;
+    }
+
+    /**
+     * @return the unit vector of the location, to pass to cosine, the only trigonometry of a query
+     */
+    public static double[] unitVector(double latitude, double longitude) {
+        double latitudeRadians = Math.toRadians(latitude);
+        double longitudeRadians = Math.toRadians(longitude);
+        double cosLatitude = Math.cos(latitudeRadians);
+        return new double[]{cosLatitude * Math.cos(longitudeRadians), cosLatitude * Math.sin(longitudeRadians), Math.sin(latitudeRadians)};
+    }
+
+    /**
+     * @return the cosine of the angle between the point and the location given by its unit vector
+     */
+    public double cosine(int index, double[] unitVector) {
+        return x[index] * unitVector[0] + y[index] * unitVector[1] + z[index] * unitVector[2];
+    }
+
+    /**
+     * Cosine of the angle between every point and the location, as a batch
+     *
+     * @param cosines filled with the cosine of each point, at least size() long
+     */
+    public void cosines(double latitude, double longitude, double[] cosines) {
+        double[] unitVector = unitVector(latitude, longitude);
+        double ux = unitVector[0];
+        double uy = unitVector[1];
+        double uz = unitVector[2];
+        for (int i = 0; i < x.length; i++) {
+            cosines[i] = x[i] * ux + y[i] * uy + z[i] * uz;
+        }
+    }
+
+    /**
+     * Distance in statute miles between every point and the location, as a batch
+     *
+     * @param distances filled with the distance of each point, at least size() long
+     */
+    public void distances(double latitude, double longitude, double[] distances) {
+        cosines(latitude, longitude, distances);
+        for (int i = 0; i < x.length; i++) {
+            distances[i] = toMiles(distances[i]);
+        }
+    }
+
+    public double distance(int index, double latitude, double longitude) {
+        return toMiles(cosine(index, unitVector(latitude, longitude)));
+    }
+
+    /**
+     * @return the cosine a point must reach to be within radiusMiles, -infinity when every point is
+     */
+    public static double cosineOfRadius(double radiusMiles) {
+        if (radiusMiles >= AttractionGridIndex.MAX_DISTANCE_MILES) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return Math.cos(Math.toRadians(radiusMiles / STATUTE_MILES_PER_DEGREE));
+    }
+
+    static double toMiles(double cosine) {
+        double angle = Math.acos(Math.max(-1, Math.min(1, cosine)));
+        return STATUTE_MILES_PER_DEGREE * Math.toDegrees(angle);
+    }
+}
@@ -0,0 +1,80 @@
+package tourGuide.attraction;
+
+/**
+ * Bounded min-heap of the attractions with the largest cosines seen so far, i.e. the nearest ones of a search.
+ * The root is the farthest of the kept attractions: an attraction that isn't closer is rejected with one comparison,
+ * nothing is allocated for it. Two primitive arrays of capacity entries, no boxing.
+ */
+final class NearestHeap {
+    private final int[] indexes;
+    private final double[] cosines;
+    private int size;
+
+    NearestHeap(int capacity) {
+        indexes = new int[capacity];
+        cosines = new double[capacity];
+    }
+
+    boolean isFull() {
+        return size == indexes.length;
+    }
+
+    void offer(int index, double cosine) {
+        if (size < indexes.length) {
+            int child = size++;
+            // sift up: the parent of a child must not be closer than it
+            while (child > 0) {
+                int parent = (child - 1) >>> 1;
+                if (cosines[parent] <= cosine) {
+                    break;
+                }
+                indexes[child] = indexes[parent];
+                cosines[child] = cosines[parent];
+                child = parent;
+            }
+            indexes[child] = index;
+            cosines[child] = cosine;
+        } else if (size > 0 && cosine > cosines[0]) {
+            siftDown(index, cosine, size);
+        }
+    }
+
+    /**
+     * Empties the heap
+     *
+     * @return the indexes of the kept attractions, closest first
+     */
+    int[] toSortedIndexes() {
+        int[] sorted = new int[size];
+        // the root is the farthest: pop it to the end of the result
+        for (int last = size - 1; last >= 0; last--) {
+            sorted[last] = indexes[0];
+            siftDown(indexes[last], cosines[last], last);
+        }
+        size = 0;
+        return sorted;
+    }
+
+    private void siftDown(int index, double cosine, int heapSize) {
+        int parent = 0;
+        while (true) {
+            int child = 2 * parent + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && cosines[child + 1] < cosines[child]) {
+                child++;
+            }
+            if (cosines[child] >= cosine) {
+                break;
+            }
+            indexes[parent] = indexes[child];
+            cosines[parent] = cosines[child];
+            parent = child;
+        }
+        if (heapSize > 0) {
+            indexes[parent] = index;
+            cosines[parent] = cosine;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package tourGuide.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU cache whose entries expire after a fixed time to live.
+ * Concurrent misses on the same key are coalesced: the first caller runs the loader,
+ * the others wait for its result instead of starting their own call.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class ExpiringCache<K, V> {
+    private final long timeToLiveNanos;
+    private final int maximumSize;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    // access ordered, the lock is only held for the map operations, never while loading
+    private final Map<K, Entry<V>> entries;
+
+    public ExpiringCache(Duration timeToLive, int maximumSize) {
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > ExpiringCache.this.maximumSize) {
+                    evictionCount.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return the cached value of the key, or load it with the loader if it is missing or expired.
+     * A failed load is not cached, the exception is rethrown to every caller waiting for it.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        long now = System.nanoTime();
+        Entry<V> created = null;
+        Entry<V> entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null || entry.isExpired(now)) {
+                created = new Entry<>(now + timeToLiveNanos);
+                entries.put(key, created);
+                entry = created;
+            }
+        }
+        if (entry != created) {
+            hitCount.increment();
+            return await(entry);
+        }
+
+        missCount.increment();
+        try {
+            V value = loader.apply(key);
+            created.value.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            invalidate(key, created);
+            created.value.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    private void invalidate(K key, Entry<V> entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    private V await(Entry<V> entry) {
+        try {
+            return entry.value.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static class Entry<V> {
+        private final CompletableFuture<V> value = new CompletableFuture<>();
+        private final long expiresAtNanos;
+
+        private Entry(long expiresAtNanos) {
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package tourGuide.cache;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * Caches the answers of RewardCentral by (attractionId, userId).
+ * The reward points of a pair are fetched at most once per time to live, even when requested concurrently.
+ */
+public class RewardPointsCache {
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(30);
+    public static final int DEFAULT_MAXIMUM_SIZE = 500_000;
+
+    private final RewardCentral rewardCentral;
+    private final ExpiringCache<RewardPointsKey, Integer> cache;
+
+    public RewardPointsCache(RewardCentral rewardCentral) {
+        this(rewardCentral, DEFAULT_TIME_TO_LIVE, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public RewardPointsCache(RewardCentral rewardCentral, Duration timeToLive, int maximumSize) {
+        this.rewardCentral = rewardCentral;
+        this.cache = new ExpiringCache<>(timeToLive, maximumSize);
+    }
+
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        return cache.get(new RewardPointsKey(attractionId, userId),
+                key -> rewardCentral.getAttractionRewardPoints(key.attractionId(), key.userId()));
+    }
+
+    public ExpiringCache<?, ?> getCache() {
+        return cache;
+    }
+
+    private record RewardPointsKey(UUID attractionId, UUID userId) {
+    }
+}
@@ -0,0 +1,48 @@
+package tourGuide.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+/**
+ * Caches the quotes of TripPricer by (userId, adults, children, nights, reward points).
+ * A user refreshing the deals gets the same quote until it expires or one of the inputs changes,
+ * concurrent requests for the same inputs share one TripPricer call.
+ */
+public class TripPricerCache {
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(10);
+    public static final int DEFAULT_MAXIMUM_SIZE = 100_000;
+
+    private final TripPricer tripPricer;
+    private final ExpiringCache<TripQuoteKey, List<Provider>> cache;
+
+    public TripPricerCache(TripPricer tripPricer) {
+        this(tripPricer, DEFAULT_TIME_TO_LIVE, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public TripPricerCache(TripPricer tripPricer, Duration timeToLive, int maximumSize) {
+        this.tripPricer = tripPricer;
+        this.cache = new ExpiringCache<>(timeToLive, maximumSize);
+    }
+
+    /**
+     * Same arguments as TripPricer.getPrice
+     *
+     * @return the providers of the quote, read only: the list is shared by every caller of the same quote
+     */
+    public List<Provider> getPrice(String apiKey, UUID userId, int adults, int children, int nightsStay, int rewardsPoints) {
+        return cache.get(new TripQuoteKey(userId, adults, children, nightsStay, rewardsPoints),
+                key -> List.copyOf(tripPricer.getPrice(apiKey, key.userId(), key.adults(), key.children(),
+                        key.nightsStay(), key.rewardsPoints())));
+    }
+
+    public ExpiringCache<?, ?> getCache() {
+        return cache;
+    }
+
+    private record TripQuoteKey(UUID userId, int adults, int children, int nightsStay, int rewardsPoints) {
+    }
+}
@@ -0,0 +1,96 @@
+package tourGuide.concurrency;
+
+/**
+ * Concurrency limit following the latency of the dependency, by gradient:
+ * a long average of the latency is the latency of the dependency at ease, a short average is its latency now.
+ * While the short one stays under rttTolerance times the long one the limit grows by about its square root per call,
+ * as soon as it goes above the limit shrinks in proportion, before the queues of the dependency build up.
+ * <p>
+ * The limit only grows when it is used: with fewer than half of it in flight the latency says nothing about more.
+ * After a slowdown the long average drifts down again, so a dependency that recovers gets its concurrency back.
+ */
+public class AdaptiveConcurrencyLimit implements ConcurrencyLimit {
+    private static final double SHORT_SMOOTHING = 0.2;
+    private static final double LONG_SMOOTHING = 2.0 / 601;
+    private static final double LIMIT_SMOOTHING = 0.2;
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private double limit;
+    private double shortRttNanos;
+    private double longRttNanos;
+    private volatile int currentLimit;
+
+    /**
+     * @param initialLimit the limit before the first call
+     * @param minLimit     the limit never goes below, at least 1
+     * @param maxLimit     the limit never goes above
+     * @param rttTolerance how much slower than at ease the dependency may get before the limit shrinks, above 1
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double rttTolerance) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Expected 1 <= minLimit <= initialLimit <= maxLimit, got: "
+                    + minLimit + ", " + initialLimit + ", " + maxLimit);
+        }
+        if (rttTolerance < 1) {
+            throw new IllegalArgumentException("The latency tolerance must be at least 1, got: " + rttTolerance);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.limit = initialLimit;
+        this.currentLimit = initialLimit;
+    }
+
+    /**
+     * A limit starting at a tenth of maxLimit, between 1 and maxLimit, with a latency tolerance of 1.5
+     */
+    public AdaptiveConcurrencyLimit(int maxLimit) {
+        this(Math.max(1, maxLimit / 10), 1, maxLimit, 1.5);
+    }
+
+    @Override
+    public int getLimit() {
+        return currentLimit;
+    }
+
+    @Override
+    public synchronized void onSample(long latencyNanos, int inFlight) {
+        if (longRttNanos == 0) {
+            shortRttNanos = latencyNanos;
+            longRttNanos = latencyNanos;
+            return;
+        }
+        shortRttNanos += (latencyNanos - shortRttNanos) * SHORT_SMOOTHING;
+        longRttNanos += (latencyNanos - longRttNanos) * LONG_SMOOTHING;
+        if (longRttNanos > 2 * shortRttNanos) {
+            // the dependency got much faster: forget the slow period sooner
+            longRttNanos *= 0.95;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1, rttTolerance * longRttNanos / shortRttNanos));
+        if (gradient == 1 && inFlight < limit / 2) {
+            return;
+        }
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - LIMIT_SMOOTHING) + newLimit * LIMIT_SMOOTHING));
+        currentLimit = (int) limit;
+    }
+
+    /**
+     * @return the short average of the latency, in milliseconds
+     */
+    public synchronized double getLatencyMillis() {
+        return shortRttNanos / 1_000_000;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+}
@@ -0,0 +1,29 @@
+package tourGuide.concurrency;
+
+/**
+ * The number of calls a DownstreamExecutor lets run at once against its dependency
+ */
+@FunctionalInterface
+public interface ConcurrencyLimit {
+
+    int getLimit();
+
+    /**
+     * Called once per completed call, an adaptive limit moves with the latencies
+     *
+     * @param latencyNanos the time the call took, without the time it waited in the queue
+     * @param inFlight     the calls running when it completed, itself included
+     */
+    default void onSample(long latencyNanos, int inFlight) {
+    }
+
+    /**
+     * @return a limit that never moves
+     */
+    static ConcurrencyLimit fixed(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The limit must be at least 1, got: " + limit);
+        }
+        return () -> limit;
+    }
+}
@@ -0,0 +1,180 @@
+package tourGuide.concurrency;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import tourGuide.exception.DownstreamOverloadedException;
+
+/**
+ * Executor for the blocking calls to one downstream dependency (gpsUtil, RewardCentral).
+ * At most getCurrentLimit() calls run at once, the other tasks wait in the queue of this executor and start
+ * as the running ones complete; no thread is held by a waiting task.
+ * The limit is fixed at maxConcurrency, or adaptive (see adaptive() and AdaptiveConcurrencyLimit): the gradient of the
+ * recent latency of the calls against their long average lowers it as soon as the dependency slows down, and raises
+ * it again while the latency holds, between 1 and maxConcurrency.
+ * With platform threads the pool has maxConcurrency threads; with virtual threads every started task gets its own.
+ * Overload: beyond maxQueuedTasks waiting tasks, a new task is rejected at once with a DownstreamOverloadedException,
+ * counted in getRejectedTaskCount(), instead of waiting in an unbounded queue.
+ */
+public class DownstreamExecutor implements Executor {
+    private final String name;
+    private final ExecutionMode executionMode;
+    private final int maxConcurrency;
+    private final ExecutorService executorService;
+    private final ExecutorService followUpExecutorService;
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final LongAdder rejectedTasks = new LongAdder();
+    private volatile ConcurrencyLimit concurrencyLimit;
+    private volatile int maxQueuedTasks = Integer.MAX_VALUE;
+
+    public DownstreamExecutor(String name, ExecutionMode executionMode) {
+        this(name, executionMode, executionMode.getDefaultMaxConcurrency());
+    }
+
+    public DownstreamExecutor(String name, ExecutionMode executionMode, int maxConcurrency) {
+        this(name, executionMode, maxConcurrency, ConcurrencyLimit.fixed(maxConcurrency));
+    }
+
+    public DownstreamExecutor(String name, ExecutionMode executionMode, int maxConcurrency, ConcurrencyLimit concurrencyLimit) {
+        this.name = name;
+        this.executionMode = executionMode;
+        this.maxConcurrency = maxConcurrency;
+        this.concurrencyLimit = concurrencyLimit;
+        if (executionMode == ExecutionMode.VIRTUAL_THREADS) {
+            this.executorService = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+            this.followUpExecutorService = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-followUp-", 0).factory());
+        } else {
+            this.executorService = Executors.newFixedThreadPool(maxConcurrency);
+            this.followUpExecutorService = Executors.newFixedThreadPool(maxConcurrency);
+        }
+    }
+
+    /**
+     * @return an executor whose limit follows the latency of the dependency, up to the default of the mode
+     */
+    public static DownstreamExecutor adaptive(String name, ExecutionMode executionMode) {
+        int maxConcurrency = executionMode.getDefaultMaxConcurrency();
+        return new DownstreamExecutor(name, executionMode, maxConcurrency, new AdaptiveConcurrencyLimit(maxConcurrency));
+    }
+
+    /**
+     * Run a task calling the dependency, it waits in the queue when the limit is reached
+     *
+     * @throws DownstreamOverloadedException when maxQueuedTasks tasks are already waiting
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (queuedTasks.incrementAndGet() > maxQueuedTasks) {
+            queuedTasks.decrementAndGet();
+            rejectedTasks.increment();
+            throw new DownstreamOverloadedException(name + " has " + maxQueuedTasks + " calls waiting already");
+        }
+        pendingTasks.add(task);
+        startPendingTasks();
+    }
+
+    /**
+     * Start queued tasks while the limit allows, called on every new task and every completion
+     */
+    private void startPendingTasks() {
+        while (!pendingTasks.isEmpty()) {
+            int active = activeTasks.get();
+            if (active >= Math.min(concurrencyLimit.getLimit(), maxConcurrency)) {
+                return;
+            }
+            if (!activeTasks.compareAndSet(active, active + 1)) {
+                continue;
+            }
+            Runnable task = pendingTasks.poll();
+            if (task == null) {
+                // another thread took the last one, give the slot back and look again
+                activeTasks.decrementAndGet();
+                continue;
+            }
+            queuedTasks.decrementAndGet();
+            executorService.execute(() -> run(task));
+        }
+    }
+
+    private void run(Runnable task) {
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } finally {
+            concurrencyLimit.onSample(System.nanoTime() - start, activeTasks.get());
+            activeTasks.decrementAndGet();
+            startPendingTasks();
+        }
+    }
+
+    /**
+     * Executor for the follow-up work that does not call the dependency, outside of the limit and the queue.
+     * It has its own threads: the follow-up work doesn't wait for the threads of the calls, nor add its time
+     * to the latency samples of the limit.
+     */
+    public Executor unlimited() {
+        return followUpExecutorService;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public ConcurrencyLimit getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public void setConcurrencyLimit(ConcurrencyLimit concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+        startPendingTasks();
+    }
+
+    /**
+     * @return the number of calls allowed at once right now
+     */
+    public int getCurrentLimit() {
+        return Math.min(concurrencyLimit.getLimit(), maxConcurrency);
+    }
+
+    public void setMaxQueuedTasks(int maxQueuedTasks) {
+        this.maxQueuedTasks = maxQueuedTasks;
+    }
+
+    /**
+     * @return the number of tasks submitted but not started yet
+     */
+    public int getQueuedTaskCount() {
+        return queuedTasks.get();
+    }
+
+    public int getActiveTaskCount() {
+        return activeTasks.get();
+    }
+
+    /**
+     * @return the number of tasks rejected because the queue was full
+     */
+    public long getRejectedTaskCount() {
+        return rejectedTasks.sum();
+    }
+
+    public void shutdown() {
+        executorService.shutdown();
+        followUpExecutorService.shutdown();
+    }
+}
@@ -0,0 +1,36 @@
+package tourGuide.concurrency;
+
+/**
+ * How the blocking calls to gpsUtil and RewardCentral are executed.
+ * In both modes the DownstreamExecutor of a dependency lets at most its current limit of calls run at once,
+ * an adaptive limit by default, and queues or rejects the others; the default max concurrency bounds that limit.
+ */
+public enum ExecutionMode {
+    /**
+     * A fixed pool of platform threads per dependency, sized to the max concurrency
+     */
+    PLATFORM_THREADS(100),
+    /**
+     * One virtual thread per started call, the concurrency of each dependency is the limit of its executor
+     */
+    VIRTUAL_THREADS(1000);
+
+    public static final String PROPERTY = "tourGuide.executionMode";
+
+    private final int defaultMaxConcurrency;
+
+    ExecutionMode(int defaultMaxConcurrency) {
+        this.defaultMaxConcurrency = defaultMaxConcurrency;
+    }
+
+    public int getDefaultMaxConcurrency() {
+        return defaultMaxConcurrency;
+    }
+
+    /**
+     * @return the mode of the tourGuide.executionMode system property, PLATFORM_THREADS if not set
+     */
+    public static ExecutionMode fromSystemProperty() {
+        return valueOf(System.getProperty(PROPERTY, PLATFORM_THREADS.name()));
+    }
+}
@@ -0,0 +1,36 @@
+package tourGuide.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Result of a bulk request, by username: a user is either in results or in errors, with the reason of its failure
+ */
+public class BulkResultDTO<T> {
+    private Map<String, T> results = new LinkedHashMap<>();
+    private Map<String, String> errors = new LinkedHashMap<>();
+
+    public void addResult(String userName, T result) {
+        results.put(userName, result);
+    }
+
+    public void addError(String userName, String error) {
+        errors.put(userName, error);
+    }
+
+    public Map<String, T> getResults() {
+        return results;
+    }
+
+    public void setResults(Map<String, T> results) {
+        this.results = results;
+    }
+
+    public Map<String, String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(Map<String, String> errors) {
+        this.errors = errors;
+    }
+}
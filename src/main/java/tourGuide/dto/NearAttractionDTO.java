@@ -2,8 +2,6 @@ package tourGuide.dto;
 
 import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
-import rewardCentral.RewardCentral;
-import tourGuide.helper.AttractionLocalDistance;
 
 public class NearAttractionDTO {
     private String attractionName;
@@ -16,15 +14,15 @@ public class NearAttractionDTO {
 
     public NearAttractionDTO(Attraction attraction,
                              VisitedLocation visitedLocation,
-                             AttractionLocalDistance attractionLocalDistance,
-                             RewardCentral rewardCentral) {
+                             double attractionDistance,
+                             int rewardsPoints) {
         this.attractionName = attraction.attractionName;
         this.attractionLatitude = attraction.latitude;
         this.attractionLongitude = attraction.longitude;
         this.userLocationLatitude = visitedLocation.location.latitude;
         this.userLocationLongitude = visitedLocation.location.longitude;
-        this.attractionDistance = attractionLocalDistance.getDistance();
-        this.rewardsPoints = rewardCentral.getAttractionRewardPoints(attraction.attractionId, visitedLocation.userId);
+        this.attractionDistance = attractionDistance;
+        this.rewardsPoints = rewardsPoints;
 
     }
 
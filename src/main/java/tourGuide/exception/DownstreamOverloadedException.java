@@ -0,0 +1,13 @@
+package tourGuide.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.concurrent.RejectedExecutionException;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "A downstream service is overloaded, try again later!")
+public class DownstreamOverloadedException extends RejectedExecutionException {
+    public DownstreamOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package tourGuide.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_GATEWAY, reason = "The location service couldn't locate the user!")
+public class LocationUnavailableException extends RuntimeException {
+    public LocationUnavailableException(String message) {
+        super(message);
+    }
+}
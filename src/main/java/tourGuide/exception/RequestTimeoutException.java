@@ -0,0 +1,11 @@
+package tourGuide.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.GATEWAY_TIMEOUT, reason = "A downstream service didn't answer in time!")
+public class RequestTimeoutException extends RuntimeException {
+    public RequestTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
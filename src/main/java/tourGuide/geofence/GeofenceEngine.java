@@ -0,0 +1,162 @@
+package tourGuide.geofence;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.attraction.AttractionCatalog;
+import tourGuide.attraction.AttractionSnapshot;
+import tourGuide.attraction.DistanceKernel;
+import tourGuide.user.LocationHistory;
+import tourGuide.user.User;
+
+/**
+ * Evaluates each new location of a user once against the attraction fences, circles of radiusMiles,
+ * and pushes an enter event to the listeners for every fence the user entered.
+ * <p>
+ * A location enters a fence when it is inside it and the previous location of the history is not:
+ * a user staying near an attraction gets one event, not one per location.
+ * One evaluation emits at most one event per fence, the first entry: a history that leaves and enters a fence again
+ * (a full history evaluation after a radius or a catalog change) doesn't start the listeners twice for it.
+ * The fences are the attraction snapshot: its grid gives the few fences around a location,
+ * and the cosine of the radius is computed once, so a location costs a few dot products.
+ * <p>
+ * The user's reward watermark is the evaluation cursor: only the locations after it are evaluated, unless the
+ * fences changed since it was written (radius, catalog), then the whole history is evaluated again.
+ */
+public class GeofenceEngine {
+    // shared by every engine so a watermark written by one engine never matches another one
+    private static final AtomicLong fenceVersions = new AtomicLong();
+    private final Logger logger = LoggerFactory.getLogger(GeofenceEngine.class);
+
+    private final AttractionCatalog attractionCatalog;
+    private final List<GeofenceListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile double radiusMiles;
+    private volatile double minCosine;
+    private volatile boolean incremental = true;
+    private volatile long fenceVersion = fenceVersions.incrementAndGet();
+
+    public GeofenceEngine(AttractionCatalog attractionCatalog, double radiusMiles) {
+        this.attractionCatalog = attractionCatalog;
+        setRadiusMiles(radiusMiles);
+        attractionCatalog.addChangeListener(snapshot -> invalidate());
+    }
+
+    public void addListener(GeofenceListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(GeofenceListener listener) {
+        listeners.remove(listener);
+    }
+
+    public double getRadiusMiles() {
+        return radiusMiles;
+    }
+
+    public void setRadiusMiles(double radiusMiles) {
+        this.minCosine = DistanceKernel.cosineOfRadius(radiusMiles);
+        this.radiusMiles = radiusMiles;
+        invalidate();
+    }
+
+    /**
+     * When enabled (the default), only the locations after the user's watermark are evaluated
+     *
+     * @param incremental false to evaluate the whole history every time
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Force the next evaluation of every user to go through the whole history
+     */
+    public void invalidate() {
+        fenceVersion = fenceVersions.incrementAndGet();
+        logger.debug("Geofence watermarks invalidated, fence version: {}", fenceVersion);
+    }
+
+    /**
+     * Evaluate the locations of the user that weren't evaluated yet, and push the fence entries to the listeners
+     *
+     * @return completed once every listener handled the events, the user's watermark is moved then
+     */
+    public CompletableFuture<Void> evaluate(User user) {
+        long version = fenceVersion;
+        LocationHistory history = user.getLocationHistory();
+        long locationCount = history.getNextSequence();
+        long firstLocation = 0;
+        if (incremental && user.getRewardWatermarkVersion() == version) {
+            firstLocation = Math.min(user.getRewardWatermark(), locationCount);
+        }
+
+        List<GeofenceEvent> events = findEntries(user, history, firstLocation, locationCount);
+        if (events.isEmpty()) {
+            user.setRewardWatermark(locationCount, version);
+            return CompletableFuture.completedFuture(null);
+        }
+        List<CompletableFuture<?>> handled = new ArrayList<>();
+        for (GeofenceEvent event : events) {
+            for (GeofenceListener listener : listeners) {
+                handled.add(notify(listener, event));
+            }
+        }
+        // only moved once every event is handled, a failed evaluation is retried on the next call
+        return CompletableFuture.allOf(handled.toArray(new CompletableFuture[0]))
+                .thenRun(() -> user.setRewardWatermark(locationCount, version));
+    }
+
+    /**
+     * The events are collected while the history is locked, and pushed once it is released
+     */
+    private List<GeofenceEvent> findEntries(User user, LocationHistory history, long firstLocation, long locationCount) {
+        AttractionSnapshot fences = attractionCatalog.getSnapshot();
+        DistanceKernel distanceKernel = fences.getDistanceKernel();
+        double radius = radiusMiles;
+        double fenceCosine = minCosine;
+        List<GeofenceEvent> events = new ArrayList<>();
+        BitSet enteredFences = new BitSet(fences.size());
+        double[][] previousUnitVector = new double[1][];
+        // from the location before the first one, to know which fences the user was already in
+        history.forEachSince(Math.max(0, firstLocation - 1), (sequence, latitude, longitude, time) -> {
+            if (sequence >= locationCount) {
+                return;
+            }
+            double[] previous = previousUnitVector[0];
+            if (sequence >= firstLocation) {
+                VisitedLocation[] visitedLocation = new VisitedLocation[1];
+                fences.forEachWithin(latitude, longitude, radius, index -> {
+                    if (!enteredFences.get(index) && (previous == null || distanceKernel.cosine(index, previous) < fenceCosine)) {
+                        enteredFences.set(index);
+                        // only built for a location that enters a fence
+                        if (visitedLocation[0] == null) {
+                            visitedLocation[0] = new VisitedLocation(user.getUserId(), new Location(latitude, longitude), new Date(time));
+                        }
+                        events.add(new GeofenceEvent(user, visitedLocation[0], fences.get(index)));
+                    }
+                });
+            }
+            previousUnitVector[0] = DistanceKernel.unitVector(latitude, longitude);
+        });
+        return events;
+    }
+
+    private static CompletableFuture<?> notify(GeofenceListener listener, GeofenceEvent event) {
+        try {
+            CompletableFuture<?> handled = listener.onEnter(event);
+            return handled != null ? handled : CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package tourGuide.geofence;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.user.User;
+
+/**
+ * The user entered the fence of the attraction at the visited location
+ */
+public record GeofenceEvent(User user, VisitedLocation visitedLocation, Attraction attraction) {
+}
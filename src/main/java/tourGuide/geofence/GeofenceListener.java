@@ -0,0 +1,19 @@
+package tourGuide.geofence;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Consumer of the fence entries found by the GeofenceEngine, i.e. rewards, notifications or analytics
+ */
+@FunctionalInterface
+public interface GeofenceListener {
+
+    /**
+     * Called on the thread that evaluates the locations, the slow work belongs on an executor.
+     * The entries of a location may be emitted again when the history is rescanned, a listener must be idempotent.
+     *
+     * @return completed once the event is handled: the user's locations are only marked as evaluated once every
+     * listener handled their events, a failed handling is retried on the next evaluation
+     */
+    CompletableFuture<?> onEnter(GeofenceEvent event);
+}
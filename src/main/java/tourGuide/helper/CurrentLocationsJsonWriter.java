@@ -0,0 +1,76 @@
+package tourGuide.helper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+import gpsUtil.location.Location;
+
+/**
+ * Writes the current locations as they are visited, through a small buffer, instead of serializing one big Map:
+ * {"locations":{"userId":{"longitude":..,"latitude":..},...},"nextCursor":"userId" or null}, or "version":.. for a delta.
+ * An IOException (i.e. the client went away) is rethrown as an UncheckedIOException, so the iteration stops.
+ */
+public class CurrentLocationsJsonWriter implements BiConsumer<UUID, Location> {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Writer writer;
+    private boolean firstLocation = true;
+
+    public CurrentLocationsJsonWriter(OutputStream outputStream) throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write("{\"locations\":{");
+    }
+
+    @Override
+    public void accept(UUID userId, Location location) {
+        try {
+            if (!firstLocation) {
+                writer.write(',');
+            }
+            firstLocation = false;
+            writer.write('"');
+            writer.write(userId.toString());
+            writer.write("\":{\"longitude\":");
+            writer.write(Double.toString(location.longitude));
+            writer.write(",\"latitude\":");
+            writer.write(Double.toString(location.latitude));
+            writer.write('}');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Close the JSON document and flush it, the output stream itself is left open
+     *
+     * @param nextCursor the cursor of the next page, null if it was the last page
+     */
+    public void finish(UUID nextCursor) throws IOException {
+        finish("nextCursor", nextCursor == null ? "null" : '"' + nextCursor.toString() + '"');
+    }
+
+    /**
+     * Close the JSON document of a delta and flush it, the output stream itself is left open
+     *
+     * @param version the version to send back on the next delta request
+     */
+    public void finishDelta(long version) throws IOException {
+        finish("version", Long.toString(version));
+    }
+
+    private void finish(String name, String jsonValue) throws IOException {
+        writer.write("},\"");
+        writer.write(name);
+        writer.write("\":");
+        writer.write(jsonValue);
+        writer.write('}');
+        writer.flush();
+    }
+}
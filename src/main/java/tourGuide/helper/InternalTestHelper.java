@@ -1,9 +1,17 @@
 package tourGuide.helper;
 
+import tourGuide.user.LocationHistory;
+
 public class InternalTestHelper {
 
 	// Set this default up to 100,000 for testing
 	private static int internalUserNumber = 100;
+	// same seed, same users: change it to get another population
+	private static long internalUserSeed = 42;
+	private static int internalUserHistoryLength = 3;
+	// 0 spreads the users uniformly over the map
+	private static int internalUserClusterCount = 0;
+	private static double internalUserClusterRadiusDegrees = 1.0;
 	
 	public static void setInternalUserNumber(int internalUserNumber) {
 		InternalTestHelper.internalUserNumber = internalUserNumber;
@@ -12,4 +20,51 @@ public class InternalTestHelper {
 	public static int getInternalUserNumber() {
 		return internalUserNumber;
 	}
+
+	public static void setInternalUserSeed(long internalUserSeed) {
+		InternalTestHelper.internalUserSeed = internalUserSeed;
+	}
+
+	public static long getInternalUserSeed() {
+		return internalUserSeed;
+	}
+
+	public static void setInternalUserHistoryLength(int internalUserHistoryLength) {
+		InternalTestHelper.internalUserHistoryLength = internalUserHistoryLength;
+	}
+
+	public static int getInternalUserHistoryLength() {
+		return internalUserHistoryLength;
+	}
+
+	/**
+	 * Group the locations of the internal users around clusterCount centers, at most radiusDegrees away
+	 */
+	public static void setInternalUserClusters(int clusterCount, double radiusDegrees) {
+		InternalTestHelper.internalUserClusterCount = clusterCount;
+		InternalTestHelper.internalUserClusterRadiusDegrees = radiusDegrees;
+	}
+
+	public static int getInternalUserClusterCount() {
+		return internalUserClusterCount;
+	}
+
+	public static double getInternalUserClusterRadiusDegrees() {
+		return internalUserClusterRadiusDegrees;
+	}
+
+	/**
+	 * @return A generator configured with the current settings
+	 */
+	public static UserGenerator getUserGenerator() {
+		return getUserGenerator(LocationHistory.DEFAULT_RETENTION);
+	}
+
+	/**
+	 * @return A generator configured with the current settings, its users keep locationHistoryRetention locations
+	 */
+	public static UserGenerator getUserGenerator(int locationHistoryRetention) {
+		return new UserGenerator(internalUserSeed, internalUserHistoryLength,
+				internalUserClusterCount, internalUserClusterRadiusDegrees, locationHistoryRetention);
+	}
 }
@@ -0,0 +1,110 @@
+package tourGuide.helper;
+
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.user.LocationHistory;
+import tourGuide.user.User;
+
+/**
+ * Generator of the internal test users.
+ * Each user gets its own random generator, seeded from the generator seed and the user index: the users are built
+ * in parallel, and the same seed always gives the same users (ids, names and locations) whatever the thread count.
+ * The visit times are relative to the start of the generation, 0 to 29 days before it.
+ * <p>
+ * Locations are uniform over the map, or grouped around clusterCount random centers when clusterCount is positive.
+ */
+public class UserGenerator {
+    private static final double MAX_LATITUDE = 85.05112878;
+    private static final int MAX_DAYS_AGO = 30;
+
+    private final long seed;
+    private final int historyLength;
+    private final int clusterCount;
+    private final double clusterRadiusDegrees;
+    private final int locationHistoryRetention;
+
+    /**
+     * @param seed                 the seed of the whole generation
+     * @param historyLength        the number of visited locations of each user
+     * @param clusterCount         the number of location clusters, 0 for uniform locations
+     * @param clusterRadiusDegrees the largest distance from a location to its cluster center, in degrees of latitude and longitude
+     */
+    public UserGenerator(long seed, int historyLength, int clusterCount, double clusterRadiusDegrees) {
+        this(seed, historyLength, clusterCount, clusterRadiusDegrees, LocationHistory.DEFAULT_RETENTION);
+    }
+
+    /**
+     * @param locationHistoryRetention the maximum number of visited locations kept per user
+     */
+    public UserGenerator(long seed, int historyLength, int clusterCount, double clusterRadiusDegrees,
+                         int locationHistoryRetention) {
+        this.seed = seed;
+        this.historyLength = historyLength;
+        this.clusterCount = clusterCount;
+        this.clusterRadiusDegrees = clusterRadiusDegrees;
+        this.locationHistoryRetention = locationHistoryRetention;
+    }
+
+    /**
+     * @return the users internalUser0 to internalUser(userCount - 1), in that order
+     */
+    public List<User> generate(int userCount) {
+        double[][] clusterCenters = generateClusterCenters();
+        long startTime = System.currentTimeMillis();
+        return IntStream.range(0, userCount)
+                .parallel()
+                .mapToObj(i -> generateUser(i, clusterCenters, startTime))
+                .toList();
+    }
+
+    private double[][] generateClusterCenters() {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[][] clusterCenters = new double[clusterCount][];
+        for (int i = 0; i < clusterCount; i++) {
+            clusterCenters[i] = new double[]{random.nextDouble(-MAX_LATITUDE, MAX_LATITUDE), random.nextDouble(-180, 180)};
+        }
+        return clusterCenters;
+    }
+
+    private User generateUser(int index, double[][] clusterCenters, long startTime) {
+        // SplittableRandom mixes its seed, consecutive seeds give independent sequences
+        SplittableRandom random = new SplittableRandom(seed + (index + 1) * 0x9E3779B97F4A7C15L);
+        String userName = "internalUser" + index;
+        User user = new User(randomUUID(random), userName, "000", userName + "@tourGuide.com", locationHistoryRetention);
+        for (int i = 0; i < historyLength; i++) {
+            Location location = clusterCenters.length == 0 ? uniformLocation(random) : clusteredLocation(random, clusterCenters);
+            Date timeVisited = new Date(startTime - TimeUnit.DAYS.toMillis(random.nextInt(MAX_DAYS_AGO)));
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, timeVisited));
+        }
+        return user;
+    }
+
+    private static Location uniformLocation(SplittableRandom random) {
+        return new Location(random.nextDouble(-MAX_LATITUDE, MAX_LATITUDE), random.nextDouble(-180, 180));
+    }
+
+    private Location clusteredLocation(SplittableRandom random, double[][] clusterCenters) {
+        double[] center = clusterCenters[random.nextInt(clusterCenters.length)];
+        double latitude = center[0] + (random.nextDouble() * 2 - 1) * clusterRadiusDegrees;
+        double longitude = center[1] + (random.nextDouble() * 2 - 1) * clusterRadiusDegrees;
+        latitude = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+        longitude = ((longitude + 180) % 360 + 360) % 360 - 180;
+        return new Location(latitude, longitude);
+    }
+
+    /**
+     * @return A version 4 UUID drawn from the generator, so the ids are reproducible too
+     */
+    private static UUID randomUUID(SplittableRandom random) {
+        long mostSignificantBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSignificantBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+}
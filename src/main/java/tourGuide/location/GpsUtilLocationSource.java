@@ -0,0 +1,22 @@
+package tourGuide.location;
+
+import java.util.UUID;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * The gpsUtil library as a LocationSource. gpsUtil has no bulk request: the users are asked one by one.
+ */
+public class GpsUtilLocationSource implements LocationSource {
+    private final GpsUtil gpsUtil;
+
+    public GpsUtilLocationSource(GpsUtil gpsUtil) {
+        this.gpsUtil = gpsUtil;
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        return gpsUtil.getUserLocation(userId);
+    }
+}
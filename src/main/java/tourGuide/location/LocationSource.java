@@ -0,0 +1,41 @@
+package tourGuide.location;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Where the current locations of the users come from: the gpsUtil library, or a simulator
+ */
+public interface LocationSource {
+
+    VisitedLocation getUserLocation(UUID userId);
+
+    /**
+     * The locations of several users in one request.
+     * The default asks the users one by one, a source with a bulk request overrides it.
+     *
+     * @return the location of each user, a user that could not be located is missing
+     */
+    default Map<UUID, VisitedLocation> getUserLocations(Collection<UUID> userIds) {
+        Map<UUID, VisitedLocation> locations = new HashMap<>();
+        for (UUID userId : userIds) {
+            try {
+                locations.put(userId, getUserLocation(userId));
+            } catch (RuntimeException e) {
+                // missing from the result, the other users of the request are still located
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * @return the largest number of users worth asking in one getUserLocations, 1 when it has no bulk request
+     */
+    default int getMaxBatchSize() {
+        return 1;
+    }
+}
@@ -0,0 +1,49 @@
+package tourGuide.location;
+
+import java.util.SplittableRandom;
+
+import gpsUtil.location.Location;
+
+/**
+ * How a simulated user moves between two requests of its location
+ */
+@FunctionalInterface
+public interface MovementModel {
+    double MAX_LATITUDE = 85.05112878;
+    double MILES_PER_DEGREE = 60 * 1.15077945;
+
+    /**
+     * @param previous the previous location of the user, null for its first location
+     */
+    Location next(Location previous, SplittableRandom random);
+
+    /**
+     * Anywhere on the map on every request, like gpsUtil
+     */
+    static MovementModel uniform() {
+        return (previous, random) -> randomLocation(random);
+    }
+
+    /**
+     * A step of at most maxStepMiles in a random direction from the previous location
+     */
+    static MovementModel randomWalk(double maxStepMiles) {
+        double maxStepDegrees = maxStepMiles / MILES_PER_DEGREE;
+        return (previous, random) -> {
+            if (previous == null) {
+                return randomLocation(random);
+            }
+            double step = random.nextDouble() * maxStepDegrees;
+            double direction = random.nextDouble() * 2 * Math.PI;
+            double latitude = previous.latitude + step * Math.cos(direction);
+            double longitude = previous.longitude + step * Math.sin(direction) / Math.max(0.01, Math.cos(Math.toRadians(previous.latitude)));
+            latitude = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+            longitude = ((longitude + 180) % 360 + 360) % 360 - 180;
+            return new Location(latitude, longitude);
+        };
+    }
+
+    private static Location randomLocation(SplittableRandom random) {
+        return new Location(random.nextDouble(-MAX_LATITUDE, MAX_LATITUDE), random.nextDouble(-180, 180));
+    }
+}
@@ -0,0 +1,161 @@
+package tourGuide.location;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.exception.LocationUnavailableException;
+
+/**
+ * In process location service, to benchmark and tune the tracker without the fixed sleeps of gpsUtil.
+ * <p>
+ * Every request, for one user or a batch, takes latency plus a random part of jitter: a batch is one round trip.
+ * Each user is located with probability 1 - errorRate, a failed user is missing from a batch result and stays put.
+ * The users move with the movement model. Each user draws its errors and its moves from its own random generator,
+ * and the jitter of the requests it starts from a second one, both seeded from the simulator seed and the user id:
+ * the same seed gives the same trips and the same failed requests, whatever the batches and the threads.
+ */
+public class SimulatedLocationSource implements LocationSource {
+    private final long seed;
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final double errorRate;
+    private final MovementModel movementModel;
+    private final int maxBatchSize;
+    private final ConcurrentMap<UUID, SimulatedUser> users = new ConcurrentHashMap<>();
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+
+    /**
+     * @param latency       the fixed part of the time of a request
+     * @param jitter        the largest random time added to latency
+     * @param errorRate     the probability that a user can't be located, from 0 to 1
+     * @param maxBatchSize  the largest number of users of one request
+     */
+    public SimulatedLocationSource(long seed, Duration latency, Duration jitter, double errorRate,
+                                   MovementModel movementModel, int maxBatchSize) {
+        if (latency.isNegative() || jitter.isNegative()) {
+            throw new IllegalArgumentException("The latency and the jitter can't be negative");
+        }
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("The error rate must be between 0 and 1, got: " + errorRate);
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be at least 1, got: " + maxBatchSize);
+        }
+        this.seed = seed;
+        this.latencyNanos = latency.toNanos();
+        this.jitterNanos = jitter.toNanos();
+        this.errorRate = errorRate;
+        this.movementModel = movementModel;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        roundTrip(userId);
+        VisitedLocation visitedLocation = locate(userId);
+        if (visitedLocation == null) {
+            throw new LocationUnavailableException("Simulated location error for user " + userId);
+        }
+        return visitedLocation;
+    }
+
+    @Override
+    public Map<UUID, VisitedLocation> getUserLocations(Collection<UUID> userIds) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+        // the jitter of a batch is drawn by its first user
+        roundTrip(userIds.iterator().next());
+        Map<UUID, VisitedLocation> locations = new HashMap<>();
+        for (UUID userId : userIds) {
+            VisitedLocation visitedLocation = locate(userId);
+            if (visitedLocation != null) {
+                locations.put(userId, visitedLocation);
+            }
+        }
+        return locations;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    /**
+     * @return the next location of the user, null for a simulated error
+     */
+    private VisitedLocation locate(UUID userId) {
+        Location location = getUser(userId).move(movementModel, errorRate);
+        if (location == null) {
+            errorCount.increment();
+            return null;
+        }
+        return new VisitedLocation(userId, location, new Date());
+    }
+
+    private SimulatedUser getUser(UUID userId) {
+        return users.computeIfAbsent(userId,
+                id -> new SimulatedUser(new SplittableRandom(seed ^ id.getMostSignificantBits() ^ id.getLeastSignificantBits())));
+    }
+
+    private void roundTrip(UUID userId) {
+        requestCount.increment();
+        long pauseNanos = latencyNanos + (jitterNanos > 0 ? getUser(userId).nextJitter(jitterNanos) : 0);
+        if (pauseNanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(pauseNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LocationUnavailableException("Interrupted while waiting for the simulated location service");
+        }
+    }
+
+    private static class SimulatedUser {
+        private final SplittableRandom random;
+        // apart from the moves: the jitter drawn depends on the batches, the trips must not
+        private final SplittableRandom jitterRandom;
+        private Location location;
+
+        private SimulatedUser(SplittableRandom random) {
+            this.random = random;
+            this.jitterRandom = random.split();
+        }
+
+        /**
+         * @return the next location, null for a simulated error: the user stays where it is
+         */
+        private synchronized Location move(MovementModel movementModel, double errorRate) {
+            if (errorRate > 0 && random.nextDouble() < errorRate) {
+                return null;
+            }
+            location = movementModel.next(location, random);
+            return location;
+        }
+
+        private synchronized long nextJitter(long jitterNanos) {
+            return jitterRandom.nextLong(jitterNanos + 1);
+        }
+    }
+}
@@ -0,0 +1,493 @@
+package tourGuide.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.attraction.AttractionSnapshot;
+import tourGuide.user.User;
+import tourGuide.user.UserRegistry;
+import tourGuide.user.UserReward;
+
+/**
+ * Append-only log of the visited locations and rewards recorded since the last user snapshot.
+ * <p>
+ * The log is a directory of segments, journal-(segment id).log, each record is (payload length, CRC32 of the payload, payload).
+ * Appends only encode the record and queue it: a single writer thread drains the queue and writes every queued record
+ * with one gathering write (group commit), then forces the segment to disk at most once every syncIntervalMillis,
+ * after every group when it is 0. The future of an append completes once its record is on disk.
+ * The queue holds at most queueCapacity records: when the disk falls behind, an append waits for room,
+ * which slows the tracker down to the pace of the disk instead of growing the heap.
+ * <p>
+ * Compaction: roll() starts a new segment before a snapshot is taken, once the snapshot is written the older segments
+ * are covered by it and deleteSegmentsBefore removes them. Without snapshots, the segments are kept.
+ * Replay is idempotent: a location is skipped unless it is more recent than the last location of the user,
+ * a reward is skipped if the user already has a reward for the attraction.
+ */
+public class LocationJournal implements Closeable {
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_GROUP_SIZE = 4096;
+    private static final int DEFAULT_QUEUE_CAPACITY = 65536;
+    private static final byte LOCATION = 1;
+    private static final byte REWARD = 2;
+    // an empty record, queued by close() to wake the writer up
+    private static final PendingRecord WAKE_UP = new PendingRecord(ByteBuffer.allocate(0), new CompletableFuture<>());
+
+    private final Logger logger = LoggerFactory.getLogger(LocationJournal.class);
+    private final Path directory;
+    private final long segmentSize;
+    private final long syncIntervalNanos;
+    private final BlockingQueue<PendingRecord> queue;
+    private final Thread writerThread;
+    private final AtomicLong appendedRecords = new AtomicLong();
+    private final AtomicLong writtenGroups = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong blockedAppends = new AtomicLong();
+    private FileChannel segment;
+    private long segmentId;
+    private volatile boolean open = true;
+
+    private record PendingRecord(ByteBuffer record, CompletableFuture<Void> durable) {
+    }
+
+    /**
+     * Open the journal, new records go to a new segment after the existing ones
+     *
+     * @param directory          the directory of the segments, created if missing
+     * @param segmentSize        the size in bytes from which a new segment is started
+     * @param syncIntervalMillis the longest time a written record waits to be forced to disk, 0 to force every group
+     */
+    public LocationJournal(Path directory, long segmentSize, long syncIntervalMillis) throws IOException {
+        this(directory, segmentSize, syncIntervalMillis, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param queueCapacity the number of records waiting for the writer beyond which an append waits
+     */
+    public LocationJournal(Path directory, long segmentSize, long syncIntervalMillis, int queueCapacity) throws IOException {
+        this.directory = directory;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.segmentSize = segmentSize;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        Files.createDirectories(directory);
+        List<Long> segmentIds = segmentIds();
+        segmentId = segmentIds.isEmpty() ? 0 : segmentIds.get(segmentIds.size() - 1);
+        openNextSegment();
+        writerThread = new Thread(this::writeGroups, "location-journal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public long getAppendedRecords() {
+        return appendedRecords.get();
+    }
+
+    public long getWrittenGroups() {
+        return writtenGroups.get();
+    }
+
+    public long getSyncs() {
+        return syncs.get();
+    }
+
+    /**
+     * @return the number of records waiting for the writer
+     */
+    public int getQueuedRecords() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of appends that waited for room in the queue
+     */
+    public long getBlockedAppends() {
+        return blockedAppends.get();
+    }
+
+    /**
+     * Append a visited location, to call once it is added to the user
+     *
+     * @return completed once the record is on disk
+     */
+    public CompletableFuture<Void> appendLocation(VisitedLocation visitedLocation) {
+        ByteBuffer payload = ByteBuffer.allocate(41);
+        payload.put(LOCATION);
+        putUserId(payload, visitedLocation.userId);
+        payload.putDouble(visitedLocation.location.latitude);
+        payload.putDouble(visitedLocation.location.longitude);
+        payload.putLong(visitedLocation.timeVisited.getTime());
+        return append(payload);
+    }
+
+    /**
+     * Append a reward, to call once it is added to the user
+     *
+     * @return completed once the record is on disk
+     */
+    public CompletableFuture<Void> appendReward(UUID userId, UserReward userReward) {
+        Attraction attraction = userReward.attraction;
+        byte[] name = bytes(attraction.attractionName);
+        byte[] city = bytes(attraction.city);
+        byte[] state = bytes(attraction.state);
+        ByteBuffer payload = ByteBuffer.allocate(1 + 16 + 12 + name.length + city.length + state.length + 16 + 24 + 4);
+        payload.put(REWARD);
+        putUserId(payload, userId);
+        payload.putInt(name.length).put(name);
+        payload.putInt(city.length).put(city);
+        payload.putInt(state.length).put(state);
+        payload.putDouble(attraction.latitude);
+        payload.putDouble(attraction.longitude);
+        payload.putDouble(userReward.visitedLocation.location.latitude);
+        payload.putDouble(userReward.visitedLocation.location.longitude);
+        payload.putLong(userReward.visitedLocation.timeVisited.getTime());
+        payload.putInt(userReward.getRewardPoints());
+        return append(payload);
+    }
+
+    private CompletableFuture<Void> append(ByteBuffer payload) {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        if (!open) {
+            durable.completeExceptionally(new IOException("The location journal is closed"));
+            return durable;
+        }
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.remaining());
+        record.putInt(payload.remaining());
+        record.putInt((int) crc.getValue());
+        record.put(payload);
+        record.flip();
+        PendingRecord pending = new PendingRecord(record, durable);
+        if (!queue.offer(pending)) {
+            blockedAppends.incrementAndGet();
+            try {
+                while (!queue.offer(pending, 100, TimeUnit.MILLISECONDS)) {
+                    if (!open) {
+                        durable.completeExceptionally(new IOException("The location journal is closed"));
+                        return durable;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                durable.completeExceptionally(new IOException("Interrupted while waiting for the location journal", e));
+                return durable;
+            }
+        }
+        appendedRecords.incrementAndGet();
+        if (!writerThread.isAlive()) {
+            // queued after close() drained the queue
+            failQueuedRecords();
+        }
+        return durable;
+    }
+
+    /**
+     * Writer thread: one gathering write per group of queued records, one force per sync interval
+     */
+    private void writeGroups() {
+        List<PendingRecord> group = new ArrayList<>();
+        List<CompletableFuture<Void>> unsynced = new ArrayList<>();
+        long lastSync = System.nanoTime();
+        while (open || !queue.isEmpty()) {
+            try {
+                long untilSync = unsynced.isEmpty() ? TimeUnit.SECONDS.toNanos(1) : Math.max(0, lastSync + syncIntervalNanos - System.nanoTime());
+                PendingRecord first = queue.poll(untilSync, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    group.add(first);
+                    queue.drainTo(group, MAX_GROUP_SIZE - 1);
+                    write(group);
+                    group.forEach(pending -> unsynced.add(pending.durable()));
+                    writtenGroups.incrementAndGet();
+                }
+                if (!unsynced.isEmpty() && System.nanoTime() - lastSync >= syncIntervalNanos) {
+                    sync();
+                    unsynced.forEach(durable -> durable.complete(null));
+                    unsynced.clear();
+                    lastSync = System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException e) {
+                logger.error("Location journal write failed", e);
+                group.forEach(pending -> pending.durable().completeExceptionally(e));
+                unsynced.forEach(durable -> durable.completeExceptionally(e));
+                unsynced.clear();
+            }
+            group.clear();
+        }
+        try {
+            sync();
+            unsynced.forEach(durable -> durable.complete(null));
+        } catch (IOException e) {
+            logger.error("Location journal sync failed", e);
+            unsynced.forEach(durable -> durable.completeExceptionally(e));
+        }
+    }
+
+    private synchronized void write(List<PendingRecord> group) throws IOException {
+        if (segment.position() >= segmentSize) {
+            segment.force(false);
+            segment.close();
+            openNextSegment();
+        }
+        ByteBuffer[] records = new ByteBuffer[group.size()];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = group.get(i).record();
+        }
+        long remaining = 0;
+        for (ByteBuffer record : records) {
+            remaining += record.remaining();
+        }
+        long groupStart = segment.position();
+        try {
+            while (remaining > 0) {
+                remaining -= write(segment, records);
+            }
+        } catch (IOException e) {
+            discardTornGroup(groupStart, e);
+            throw e;
+        }
+    }
+
+    /**
+     * One gathering write of the records to the segment
+     */
+    protected long write(FileChannel segment, ByteBuffer[] records) throws IOException {
+        return segment.write(records);
+    }
+
+    /**
+     * Remove the part of a group written before a failure: replay stops at the first torn record, the records
+     * appended after it must not follow it in the segment. Truncated back to the start of the group, or when even
+     * that fails, the segment is left as is and the next records go to a new segment.
+     */
+    private void discardTornGroup(long groupStart, IOException failure) {
+        try {
+            segment.truncate(groupStart);
+            segment.position(groupStart);
+            return;
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+        try {
+            openNextSegment();
+        } catch (IOException e) {
+            // the closed segment fails the next write, which tries a new segment again
+            failure.addSuppressed(e);
+        }
+    }
+
+    private synchronized void sync() throws IOException {
+        segment.force(false);
+        syncs.incrementAndGet();
+    }
+
+    /**
+     * Start a new segment: the records appended after it are in this segment or later ones
+     *
+     * @return the id of the new segment, to give to deleteSegmentsBefore once a snapshot is written
+     */
+    public synchronized long roll() throws IOException {
+        segment.force(false);
+        segment.close();
+        openNextSegment();
+        return segmentId;
+    }
+
+    /**
+     * Delete the segments older than the given segment, i.e. the segments covered by a snapshot
+     *
+     * @return the number of segments deleted
+     */
+    public synchronized int deleteSegmentsBefore(long firstKeptSegmentId) throws IOException {
+        int deleted = 0;
+        for (long id : segmentIds()) {
+            if (id < firstKeptSegmentId && Files.deleteIfExists(segmentPath(id))) {
+                deleted++;
+            }
+        }
+        logger.debug("Location journal compacted: {} segments deleted before segment {}", deleted, firstKeptSegmentId);
+        return deleted;
+    }
+
+    /**
+     * Apply the records of every segment to the users, oldest first.
+     * A record with a bad length or checksum (a write cut by a crash) ends the replay of its segment.
+     *
+     * @param users       the users to update, the records of unknown users are skipped
+     * @param attractions the current catalog, to bind the rewards to its attractions
+     * @return the number of records applied
+     */
+    public long replay(UserRegistry users, AttractionSnapshot attractions) throws IOException {
+        long start = System.nanoTime();
+        Map<String, Attraction> attractionsByName = UserSnapshotStore.attractionsByName(attractions);
+        long applied = 0;
+        for (long id : segmentIds()) {
+            if (id == segmentId) {
+                continue;
+            }
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    logger.warn("Location journal segment {} is truncated, {} bytes ignored", id, buffer.remaining() + RECORD_HEADER_SIZE);
+                    break;
+                }
+                ByteBuffer payload = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    logger.warn("Location journal segment {} has a corrupted record, the rest of the segment is ignored", id);
+                    break;
+                }
+                if (apply(payload, users, attractionsByName)) {
+                    applied++;
+                }
+            }
+        }
+        logger.info("Location journal replayed: {} records applied in {} ms", applied,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return applied;
+    }
+
+    private static boolean apply(ByteBuffer payload, UserRegistry users, Map<String, Attraction> attractionsByName) {
+        byte type = payload.get();
+        User user = users.getById(new UUID(payload.getLong(), payload.getLong()));
+        if (user == null) {
+            return false;
+        }
+        if (type == LOCATION) {
+            Location location = new Location(payload.getDouble(), payload.getDouble());
+            long time = payload.getLong();
+            VisitedLocation last = user.getLocationHistory().getLast(user.getUserId());
+            if (last != null && last.timeVisited.getTime() >= time) {
+                return false;
+            }
+            VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), location, new Date(time));
+            user.addToVisitedLocations(visitedLocation);
+            user.setLatestLocationTimestampMillis(time);
+            return true;
+        }
+        if (type == REWARD) {
+            String attractionName = string(payload);
+            String city = string(payload);
+            String state = string(payload);
+            Attraction attraction = UserSnapshotStore.resolveAttraction(attractionsByName, attractionName, city, state,
+                    payload.getDouble(), payload.getDouble());
+            Location location = new Location(payload.getDouble(), payload.getDouble());
+            VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), location, new Date(payload.getLong()));
+            return user.addUserReward(new UserReward(visitedLocation, attraction, payload.getInt()));
+        }
+        return false;
+    }
+
+    /**
+     * Stop accepting records, write and force the queued ones, then close the segment
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        // not interrupted: an interrupt during a write would close the channel.
+        // With a full queue there is no room and no need for it, the writer is busy until the queue is empty
+        queue.offer(WAKE_UP);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failQueuedRecords();
+        synchronized (this) {
+            segment.close();
+        }
+    }
+
+    private void failQueuedRecords() {
+        IOException closed = new IOException("The location journal is closed");
+        for (PendingRecord pending = queue.poll(); pending != null; pending = queue.poll()) {
+            pending.durable().completeExceptionally(closed);
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        segmentId++;
+        segment = FileChannel.open(segmentPath(segmentId), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private List<Long> segmentIds() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static void putUserId(ByteBuffer payload, UUID userId) {
+        payload.putLong(userId.getMostSignificantBits());
+        payload.putLong(userId.getLeastSignificantBits());
+    }
+
+    private static byte[] bytes(String value) {
+        return (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getInt()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,398 @@
+package tourGuide.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import org.javamoney.moneta.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.attraction.AttractionSnapshot;
+import tourGuide.user.LocationHistory;
+import tourGuide.user.User;
+import tourGuide.user.UserPreferences;
+import tourGuide.user.UserReward;
+
+/**
+ * Binary snapshot of the users (identity, preferences, location history and rewards) for a fast restart.
+ * <p>
+ * Layout, big endian: a header (magic, format version), the user records grouped in blocks of about BLOCK_SIZE bytes,
+ * the block table (offset, length and user count of each block), then a trailer (block table offset, block count, magic).
+ * A restore maps each block of the file in memory and decodes the blocks in parallel.
+ * <p>
+ * Rewards keep the attraction name and position: attraction ids are random for each gpsUtil process,
+ * a restored reward is bound to the attraction of the same name in the current catalog.
+ * The trip deals are quotes, they are not saved.
+ */
+public class UserSnapshotStore {
+    private static final int MAGIC = 0x54475553;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int TRAILER_SIZE = 16;
+    private static final int BLOCK_TABLE_ENTRY_SIZE = 20;
+    private static final long BLOCK_SIZE = 8L * 1024 * 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(UserSnapshotStore.class);
+    private final Path path;
+    private final int locationHistoryRetention;
+    private ScheduledExecutorService snapshotExecutorService;
+    private Supplier<? extends Collection<User>> periodicUsers;
+    private LocationJournal journal;
+
+    public UserSnapshotStore(Path path) {
+        this(path, LocationHistory.DEFAULT_RETENTION);
+    }
+
+    /**
+     * @param locationHistoryRetention the maximum number of visited locations kept per restored user
+     */
+    public UserSnapshotStore(Path path, int locationHistoryRetention) {
+        this.path = path;
+        this.locationHistoryRetention = locationHistoryRetention;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Compact the journal on each periodic snapshot: the segments written before the snapshot are deleted
+     */
+    public synchronized void setJournal(LocationJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Write the snapshot of the users to a temporary file, force it to disk, move it over the previous snapshot
+     * and force the directory: once it returns, the snapshot survives a crash or a power loss
+     *
+     * @return the number of users written
+     */
+    public synchronized int write(Collection<User> users) throws IOException {
+        long start = System.nanoTime();
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        List<long[]> blocks = new ArrayList<>();
+        int userCount = 0;
+        try (FileChannel channel = FileChannel.open(temporaryPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            long position = HEADER_SIZE;
+            long blockStart = position;
+            int blockUsers = 0;
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream(512);
+            DataOutputStream recordOut = new DataOutputStream(record);
+            for (User user : users) {
+                record.reset();
+                writeUser(recordOut, user);
+                recordOut.flush();
+                record.writeTo(out);
+                position += record.size();
+                blockUsers++;
+                userCount++;
+                if (position - blockStart >= BLOCK_SIZE) {
+                    blocks.add(new long[]{blockStart, position - blockStart, blockUsers});
+                    blockStart = position;
+                    blockUsers = 0;
+                }
+            }
+            if (blockUsers > 0) {
+                blocks.add(new long[]{blockStart, position - blockStart, blockUsers});
+            }
+
+            long blockTableOffset = position;
+            for (long[] block : blocks) {
+                out.writeLong(block[0]);
+                out.writeLong(block[1]);
+                out.writeInt((int) block[2]);
+            }
+            out.writeLong(blockTableOffset);
+            out.writeInt(blocks.size());
+            out.writeInt(MAGIC);
+            out.flush();
+            // on disk before the move, else a crash can leave an empty or partial file under the snapshot name
+            force(channel);
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // the rename itself is only durable once the directory is forced
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            force(directoryChannel);
+        }
+        logger.info("User snapshot written: {} users, {} blocks, {} ms", userCount, blocks.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return userCount;
+    }
+
+    /**
+     * Read the snapshot, the blocks are mapped and decoded in parallel
+     *
+     * @param attractions the current catalog, to bind the rewards to its attractions
+     * @return the users of the snapshot, an empty list if there is no snapshot
+     */
+    public List<User> read(AttractionSnapshot attractions) throws IOException {
+        if (!Files.exists(path)) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        Map<String, Attraction> attractionsByName = attractionsByName(attractions);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("User snapshot " + path + " is truncated");
+            }
+            ByteBuffer header = map(channel, 0, HEADER_SIZE);
+            ByteBuffer trailer = map(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            long blockTableOffset = trailer.getLong();
+            int blockCount = trailer.getInt();
+            if (header.getInt() != MAGIC || trailer.getInt() != MAGIC) {
+                throw new IOException("User snapshot " + path + " is not a user snapshot or is truncated");
+            }
+            int formatVersion = header.getInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("User snapshot " + path + " has the unsupported format version " + formatVersion);
+            }
+
+            ByteBuffer blockTable = map(channel, blockTableOffset, (long) blockCount * BLOCK_TABLE_ENTRY_SIZE);
+            long[][] blocks = new long[blockCount][];
+            for (int i = 0; i < blockCount; i++) {
+                blocks[i] = new long[]{blockTable.getLong(), blockTable.getLong(), blockTable.getInt()};
+            }
+            List<User> users = IntStream.range(0, blockCount)
+                    .parallel()
+                    .mapToObj(i -> readBlock(channel, blocks[i], attractionsByName))
+                    .flatMap(List::stream)
+                    .toList();
+            logger.info("User snapshot read: {} users, {} blocks, {} ms", users.size(), blockCount,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return users;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Write a snapshot every interval in a background thread, and a last one on shutdown()
+     *
+     * @param users supplies the users to write
+     */
+    public synchronized void startPeriodicSnapshots(Supplier<? extends Collection<User>> users, Duration interval) {
+        if (snapshotExecutorService != null) {
+            return;
+        }
+        periodicUsers = users;
+        snapshotExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotExecutorService.scheduleWithFixedDelay(this::writePeriodicSnapshot,
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (snapshotExecutorService != null) {
+            snapshotExecutorService.shutdownNow();
+            snapshotExecutorService = null;
+            writePeriodicSnapshot();
+        }
+    }
+
+    /**
+     * Force a written file or directory to disk, with its metadata
+     */
+    protected void force(FileChannel channel) throws IOException {
+        channel.force(true);
+    }
+
+    private synchronized void writePeriodicSnapshot() {
+        try {
+            // every record of the older segments is already applied to the users, so it is in the snapshot
+            long checkpointSegmentId = journal != null && journal.isOpen() ? journal.roll() : -1;
+            write(periodicUsers.get());
+            // only once the snapshot is durable: a failed write throws and keeps the segments to replay
+            if (checkpointSegmentId >= 0) {
+                journal.deleteSegmentsBefore(checkpointSegmentId);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("User snapshot to {} failed, the previous snapshot is kept", path, e);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<User> readBlock(FileChannel channel, long[] block, Map<String, Attraction> attractionsByName) {
+        ByteBuffer buffer = map(channel, block[0], block[1]);
+        int userCount = (int) block[2];
+        List<User> users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            users.add(readUser(buffer, attractionsByName));
+        }
+        return users;
+    }
+
+    private static void writeUser(DataOutputStream out, User user) throws IOException {
+        out.writeLong(user.getUserId().getMostSignificantBits());
+        out.writeLong(user.getUserId().getLeastSignificantBits());
+        writeString(out, user.getUserName());
+        writeString(out, user.getPhoneNumber());
+        writeString(out, user.getEmailAddress());
+        out.writeLong(user.getLatestLocationTimestampMillis());
+
+        UserPreferences preferences = user.getUserPreferences();
+        out.writeInt(preferences.getAttractionProximity());
+        writeString(out, preferences.getLowerPricePoint().getCurrency().getCurrencyCode());
+        writeString(out, preferences.getLowerPricePoint().getNumberStripped().toPlainString());
+        writeString(out, preferences.getHighPricePoint().getCurrency().getCurrencyCode());
+        writeString(out, preferences.getHighPricePoint().getNumberStripped().toPlainString());
+        out.writeInt(preferences.getTripDuration());
+        out.writeInt(preferences.getTicketQuantity());
+        out.writeInt(preferences.getNumberOfAdults());
+        out.writeInt(preferences.getNumberOfChildren());
+
+        // the history is copied under its lock, as primitives
+        ByteArrayOutputStream points = new ByteArrayOutputStream();
+        DataOutputStream pointsOut = new DataOutputStream(points);
+        int[] pointCount = new int[1];
+        user.getLocationHistory().forEachSince(0, (sequence, latitude, longitude, time) -> {
+            try {
+                pointsOut.writeDouble(latitude);
+                pointsOut.writeDouble(longitude);
+                pointsOut.writeLong(time);
+                pointCount[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.writeInt(pointCount[0]);
+        points.writeTo(out);
+
+        List<UserReward> userRewards = user.getUserRewards();
+        out.writeInt(userRewards.size());
+        for (UserReward userReward : userRewards) {
+            Attraction attraction = userReward.attraction;
+            writeString(out, attraction.attractionName);
+            writeString(out, attraction.city);
+            writeString(out, attraction.state);
+            out.writeDouble(attraction.latitude);
+            out.writeDouble(attraction.longitude);
+            out.writeDouble(userReward.visitedLocation.location.latitude);
+            out.writeDouble(userReward.visitedLocation.location.longitude);
+            out.writeLong(userReward.visitedLocation.timeVisited.getTime());
+            out.writeInt(userReward.getRewardPoints());
+        }
+    }
+
+    private User readUser(ByteBuffer in, Map<String, Attraction> attractionsByName) {
+        UUID userId = new UUID(in.getLong(), in.getLong());
+        User user = new User(userId, readString(in), readString(in), readString(in), locationHistoryRetention);
+        user.setLatestLocationTimestampMillis(in.getLong());
+
+        UserPreferences preferences = user.getUserPreferences();
+        preferences.setAttractionProximity(in.getInt());
+        String lowerCurrency = readString(in);
+        preferences.setLowerPricePoint(Money.of(new BigDecimal(readString(in)), lowerCurrency));
+        String highCurrency = readString(in);
+        preferences.setHighPricePoint(Money.of(new BigDecimal(readString(in)), highCurrency));
+        preferences.setTripDuration(in.getInt());
+        preferences.setTicketQuantity(in.getInt());
+        preferences.setNumberOfAdults(in.getInt());
+        preferences.setNumberOfChildren(in.getInt());
+
+        int pointCount = in.getInt();
+        for (int i = 0; i < pointCount; i++) {
+            Location location = new Location(in.getDouble(), in.getDouble());
+            user.addToVisitedLocations(new VisitedLocation(userId, location, new Date(in.getLong())));
+        }
+
+        int rewardCount = in.getInt();
+        for (int i = 0; i < rewardCount; i++) {
+            String attractionName = readString(in);
+            String city = readString(in);
+            String state = readString(in);
+            double latitude = in.getDouble();
+            double longitude = in.getDouble();
+            Attraction attraction = resolveAttraction(attractionsByName, attractionName, city, state, latitude, longitude);
+            Location location = new Location(in.getDouble(), in.getDouble());
+            VisitedLocation visitedLocation = new VisitedLocation(userId, location, new Date(in.getLong()));
+            user.addUserReward(new UserReward(visitedLocation, attraction, in.getInt()));
+        }
+        return user;
+    }
+
+    static Map<String, Attraction> attractionsByName(AttractionSnapshot attractions) {
+        Map<String, Attraction> attractionsByName = new HashMap<>();
+        attractions.getAttractions().forEach(attraction -> attractionsByName.put(attraction.attractionName, attraction));
+        return attractionsByName;
+    }
+
+    /**
+     * @return the attraction of the catalog with this name and position, else a copy of the saved attraction
+     */
+    static Attraction resolveAttraction(Map<String, Attraction> attractionsByName, String attractionName,
+                                        String city, String state, double latitude, double longitude) {
+        Attraction attraction = attractionsByName.get(attractionName);
+        if (attraction == null || attraction.latitude != latitude || attraction.longitude != longitude) {
+            attraction = new Attraction(attractionName, city, state, latitude, longitude);
+        }
+        return attraction;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
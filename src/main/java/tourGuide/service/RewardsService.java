@@ -1,84 +1,226 @@
 package tourGuide.service;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.*;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
-import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import tourGuide.attraction.AttractionCatalog;
+import tourGuide.cache.RewardPointsCache;
+import tourGuide.concurrency.AdaptiveConcurrencyLimit;
+import tourGuide.concurrency.ConcurrencyLimit;
+import tourGuide.concurrency.DownstreamExecutor;
+import tourGuide.concurrency.ExecutionMode;
+import tourGuide.geofence.GeofenceEngine;
+import tourGuide.geofence.GeofenceEvent;
+import tourGuide.persistence.LocationJournal;
 import tourGuide.user.User;
 import tourGuide.user.UserReward;
 
 @Service
 public class RewardsService {
     private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
-    private Logger logger = LoggerFactory.getLogger(RewardsService.class);
+    private final Logger logger = LoggerFactory.getLogger(RewardsService.class);
 
     // proximity in miles
     private int defaultProximityBuffer = 10;
     private int proximityBuffer = defaultProximityBuffer;
     private int attractionProximityRange = 200;
-    private final GpsUtil gpsUtil;
-    private final RewardCentral rewardsCentral;
-    private final ExecutorService calculateExecutorService = Executors.newFixedThreadPool(100);
+    private final AttractionCatalog attractionCatalog;
+    private final RewardPointsCache rewardPointsCache;
+    private final DownstreamExecutor rewardCentralExecutor;
+    private final GeofenceEngine geofenceEngine;
+    private volatile LocationJournal locationJournal;
 
     public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral) {
-        this.gpsUtil = gpsUtil;
-        this.rewardsCentral = rewardCentral;
+        this(gpsUtil, rewardCentral, ExecutionMode.fromSystemProperty());
+    }
+
+    public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral, ExecutionMode executionMode) {
+        this(new AttractionCatalog(gpsUtil), new RewardPointsCache(rewardCentral), executionMode);
+    }
+
+    @Autowired
+    public RewardsService(AttractionCatalog attractionCatalog, RewardPointsCache rewardPointsCache,
+                          @Value("${" + ExecutionMode.PROPERTY + ":PLATFORM_THREADS}") ExecutionMode executionMode) {
+        this.attractionCatalog = attractionCatalog;
+        this.rewardPointsCache = rewardPointsCache;
+        this.rewardCentralExecutor = DownstreamExecutor.adaptive("rewardCentral", executionMode);
+        this.geofenceEngine = new GeofenceEngine(attractionCatalog, proximityBuffer);
+        geofenceEngine.addListener(this::onEnter);
+    }
+
+    public AttractionCatalog getAttractionCatalog() {
+        return attractionCatalog;
+    }
+
+    public DownstreamExecutor getRewardCentralExecutor() {
+        return rewardCentralExecutor;
+    }
+
+    /**
+     * The engine that finds the rewards, other listeners can be added to it
+     */
+    public GeofenceEngine getGeofenceEngine() {
+        return geofenceEngine;
+    }
+
+    /**
+     * Log every new reward to the journal, null to stop
+     */
+    public void setLocationJournal(LocationJournal locationJournal) {
+        this.locationJournal = locationJournal;
+    }
+
+    /**
+     * Let the RewardCentral concurrency follow its latency, or keep it at its maximum
+     */
+    @Value("${tourGuide.executor.adaptiveLimit:true}")
+    public void setAdaptiveConcurrencyLimit(boolean adaptive) {
+        int maxConcurrency = rewardCentralExecutor.getMaxConcurrency();
+        rewardCentralExecutor.setConcurrencyLimit(adaptive ? new AdaptiveConcurrencyLimit(maxConcurrency) : ConcurrencyLimit.fixed(maxConcurrency));
+    }
+
+    /**
+     * Beyond this many calls waiting for RewardCentral, a new reward fails and is retried on the next calculation
+     */
+    @Value("${tourGuide.executor.maxQueuedTasks:2147483647}")
+    public void setMaxQueuedRewardCentralCalls(int maxQueuedTasks) {
+        rewardCentralExecutor.setMaxQueuedTasks(maxQueuedTasks);
     }
 
     public void setProximityBuffer(int proximityBuffer) {
         this.proximityBuffer = proximityBuffer;
+        geofenceEngine.setRadiusMiles(proximityBuffer);
     }
 
     public void setDefaultProximityBuffer() {
-        proximityBuffer = defaultProximityBuffer;
+        setProximityBuffer(defaultProximityBuffer);
     }
 
+    /**
+     * When enabled (the default), calculateRewards only checks the locations visited since the last calculation
+     *
+     * @param incrementalRewards false to rescan the whole history on every calculation
+     */
+    public void setIncrementalRewards(boolean incrementalRewards) {
+        geofenceEngine.setIncremental(incrementalRewards);
+    }
 
-    public void calculateRewards(User user) {
-        List<VisitedLocation> userLocations = user.getVisitedLocations();
+    /**
+     * Force the next calculateRewards of every user to rescan the whole history,
+     * i.e. after a change of the proximity buffer or of the attraction catalog
+     */
+    public void invalidateRewardWatermarks() {
+        geofenceEngine.invalidate();
+    }
 
-        List<Attraction> attractions = gpsUtil.getAttractions();
+    /**
+     * Rescan the whole history of the user, whatever its watermark
+     *
+     * @param user User
+     */
+    public void rebuildRewards(User user) {
+        user.resetRewardWatermark();
+        calculateRewards(user);
+    }
 
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
+    /**
+     * Check the visited locations of the user against the attractions and add the missing rewards.
+     * Only the locations after the user's watermark are checked, unless the rules changed since it was written.
+     * The geofence engine finds the attractions the user entered, the rewards are added by onEnter.
+     *
+     * @param user User
+     */
+    public void calculateRewards(User user) {
+        calculateRewardsAsync(user).join();
+    }
 
-        for (Attraction attraction : attractions) {
-            if (user.getUserRewards().stream().anyMatch(r -> r.attraction.attractionName.equals(attraction.attractionName))) {
-                continue;
-            }
-            for (VisitedLocation visitedLocation : userLocations) {
-                if (nearAttraction(visitedLocation, attraction)) {
-                    CompletableFuture<Void> futureUserReward = CompletableFuture.runAsync(() -> {
-                        UserReward userReward = new UserReward(visitedLocation, attraction, getRewardPoints(attraction, user));
-                        user.addUserReward(userReward);
-                    }, calculateExecutorService);
-                    futures.add(futureUserReward);
-                    break;
-                }
-            }
+    /**
+     * Same as calculateRewards, without waiting for RewardCentral.
+     * A failed evaluation (RewardCentral down, or too many calls waiting for it) is logged, not thrown:
+     * the watermark stays where it was, so the next calculation of the user retries the same locations.
+     *
+     * @param user User
+     * @return completed once the rewards are stored or the failure logged, never completed exceptionally
+     */
+    public CompletableFuture<Void> calculateRewardsAsync(User user) {
+        return geofenceEngine.evaluate(user).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            logger.warn("Rewards of user {} not calculated, retried on its next calculation: {}", user.getUserName(), cause.toString());
+            return null;
+        });
+    }
+
+    /**
+     * Geofence listener: reward the user for an attraction entered for the first time
+     *
+     * @param event the entry
+     * @return completed once the reward is stored, on the RewardCentral executor
+     */
+    private CompletableFuture<Void> onEnter(GeofenceEvent event) {
+        User user = event.user();
+        Attraction attraction = event.attraction();
+        if (user.hasRewardFor(attraction.attractionName)) {
+            return CompletableFuture.completedFuture(null);
         }
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        return CompletableFuture.runAsync(() -> {
+            UserReward userReward = new UserReward(event.visitedLocation(), attraction, getRewardPoints(attraction, user));
+            LocationJournal journal = locationJournal;
+            if (user.addUserReward(userReward) && journal != null) {
+                journal.appendReward(user.getUserId(), userReward);
+            }
+        }, rewardCentralExecutor);
     }
 
+    /**
+     * Return the nearest attractions to the location, closest first
+     *
+     * @param location the user location
+     * @param count    the number of attractions to return
+     * @return An Attraction List
+     */
+    public List<Attraction> getNearestAttractions(Location location, int count) {
+        return attractionCatalog.getSnapshot().findNearestAttractions(location, count);
+    }
 
     public boolean isWithinAttractionProximity(Attraction attraction, Location location) {
         return !(getDistance(attraction, location) > attractionProximityRange);
     }
 
-    private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-        return !(getDistance(attraction, visitedLocation.location) > proximityBuffer);
+    private int getRewardPoints(Attraction attraction, User user) {
+        return getRewardPoints(attraction, user.getUserId());
     }
 
-    private int getRewardPoints(Attraction attraction, User user) {
-        return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+    /**
+     * Return the reward points of the attraction for the user, through the RewardCentral cache
+     *
+     * @param attraction the attraction
+     * @param userId     the user id
+     * @return the reward points
+     */
+    public int getRewardPoints(Attraction attraction, UUID userId) {
+        return rewardPointsCache.getAttractionRewardPoints(attraction.attractionId, userId);
+    }
+
+    /**
+     * Same as getRewardPoints(Attraction, UUID), on the RewardCentral executor
+     *
+     * @param attraction the attraction
+     * @param userId     the user id
+     * @return the reward points, once RewardCentral (or the cache) answered
+     */
+    public CompletableFuture<Integer> getRewardPointsAsync(Attraction attraction, UUID userId) {
+        return CompletableFuture.supplyAsync(() -> getRewardPoints(attraction, userId), rewardCentralExecutor);
     }
 
     public double getDistance(Location loc1, Location loc2) {
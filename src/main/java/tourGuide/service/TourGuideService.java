@@ -1,27 +1,43 @@
 package tourGuide.service;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
-import rewardCentral.RewardCentral;
+import tourGuide.attraction.AttractionSnapshot;
+import tourGuide.cache.TripPricerCache;
+import tourGuide.concurrency.AdaptiveConcurrencyLimit;
+import tourGuide.concurrency.ConcurrencyLimit;
+import tourGuide.concurrency.DownstreamExecutor;
+import tourGuide.concurrency.ExecutionMode;
+import tourGuide.dto.BulkResultDTO;
 import tourGuide.dto.NearAttractionDTO;
 import tourGuide.exception.UserAlreadyExistException;
 import tourGuide.exception.UserNotFoundException;
+import tourGuide.exception.LocationUnavailableException;
 import tourGuide.helper.InternalTestHelper;
-import tourGuide.helper.AttractionLocalDistance;
+import tourGuide.location.GpsUtilLocationSource;
+import tourGuide.location.LocationSource;
+import tourGuide.persistence.LocationJournal;
 import tourGuide.tracker.Tracker;
+import tourGuide.user.LocationChangeIndex;
+import tourGuide.user.LocationHistory;
 import tourGuide.user.User;
+import tourGuide.user.UserRegistry;
 import tourGuide.user.UserReward;
 import tripPricer.Provider;
 import tripPricer.TripPricer;
@@ -34,23 +50,54 @@ import static java.util.stream.Collectors.toMap;
 @Service
 public class TourGuideService {
     private final Logger logger = LoggerFactory.getLogger(TourGuideService.class);
-    private final GpsUtil gpsUtil;
+    private final LocationSource locationSource;
     private final RewardsService rewardsService;
-    private final TripPricer tripPricer = new TripPricer();
+    private final TripPricerCache tripPricerCache;
     public final Tracker tracker;
     boolean testMode = true;
-    private final ExecutorService trackUserExecutorService = Executors.newFixedThreadPool(100);
-
+    private final DownstreamExecutor gpsExecutor;
+    private final DownstreamExecutor tripPricerExecutor;
+    private volatile LocationJournal locationJournal;
+    private final ConcurrentMap<UUID, CompletableFuture<VisitedLocation>> trackingsInFlight = new ConcurrentHashMap<>();
+    private volatile long locationFreshnessMillis;
 
 
     public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
-        this.gpsUtil = gpsUtil;
+        this(gpsUtil, rewardsService, ExecutionMode.fromSystemProperty());
+    }
+
+    public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, ExecutionMode executionMode) {
+        this(gpsUtil, rewardsService, new TripPricerCache(new TripPricer()), executionMode);
+    }
+
+    public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripPricerCache tripPricerCache,
+                            ExecutionMode executionMode) {
+        this(new GpsUtilLocationSource(gpsUtil), rewardsService, tripPricerCache, executionMode);
+    }
+
+    public TourGuideService(LocationSource locationSource, RewardsService rewardsService, TripPricerCache tripPricerCache,
+                            ExecutionMode executionMode) {
+        this(locationSource, rewardsService, tripPricerCache, executionMode, LocationHistory.DEFAULT_RETENTION);
+    }
+
+    /**
+     * @param locationHistoryRetention the maximum number of visited locations kept per internal user
+     */
+    @Autowired
+    public TourGuideService(LocationSource locationSource, RewardsService rewardsService, TripPricerCache tripPricerCache,
+                            @Value("${" + ExecutionMode.PROPERTY + ":PLATFORM_THREADS}") ExecutionMode executionMode,
+                            @Value("${tourGuide.locationHistory.retention:1000}") int locationHistoryRetention) {
+        this.locationSource = locationSource;
         this.rewardsService = rewardsService;
+        this.tripPricerCache = tripPricerCache;
+        this.gpsExecutor = DownstreamExecutor.adaptive("gpsUtil", executionMode);
+        this.tripPricerExecutor = new DownstreamExecutor("tripPricer", executionMode);
+        logger.info("Execution mode: {}", executionMode);
 
         if (testMode) {
             logger.info("TestMode enabled");
             logger.debug("Initializing users");
-            initializeInternalUsers();
+            initializeInternalUsers(locationHistoryRetention);
             logger.debug("Finished initializing users");
         }
         tracker = new Tracker(this);
@@ -62,15 +109,28 @@ public class TourGuideService {
     }
 
     public VisitedLocation getUserLocation(User user) throws ExecutionException, InterruptedException {
+        return getUserLocationAsync(user).get();
+    }
+
+    /**
+     * Return the last visited location of the user, or track its current location if it has none
+     *
+     * @param user User
+     * @return CompletableFuture, already completed when the user has a location
+     */
+    public CompletableFuture<VisitedLocation> getUserLocationAsync(User user) {
         logger.debug("getLocation methode starts here, from TourGuideService");
-        VisitedLocation visitedLocation =
-                (user.getVisitedLocations().size() > 0) ? user.getLastVisitedLocation() : trackUserLocation(user).get();
-        logger.info("Retrieve successfully user lastVisitedLocation if exists, if not track user current location");
-        return visitedLocation;
+        VisitedLocation lastVisitedLocation = user.getLocationHistory().getLast(user.getUserId());
+        if (lastVisitedLocation != null) {
+            logger.info("Retrieve successfully user lastVisitedLocation");
+            return CompletableFuture.completedFuture(lastVisitedLocation);
+        }
+        logger.info("No lastVisitedLocation, track user current location");
+        return trackUserLocation(user);
     }
 
     public User getUser(String userName) {
-        User user = internalUserMap.get(userName);
+        User user = userRegistry.getByUserName(userName);
         if (user == null) {
             logger.debug("This user doesn't exist in the DB with this username:{}, getUser method", userName);
             throw new UserNotFoundException("This user doesn't exist in the DB with this username: " + userName);
@@ -79,26 +139,61 @@ public class TourGuideService {
         return user;
     }
 
+    /**
+     * Retrieve a User by its id
+     *
+     * @param userId the user id
+     * @return the User
+     */
+    public User getUserById(UUID userId) {
+        User user = userRegistry.getById(userId);
+        if (user == null) {
+            logger.debug("This user doesn't exist in the DB with this userId:{}, getUserById method", userId);
+            throw new UserNotFoundException("This user doesn't exist in the DB with this userId: " + userId);
+        }
+        return user;
+    }
+
     /**
      * Retrieve all Users
      *
-     * @return A User List
+     * @return A copy of the User List, prefer getUsers() to iterate over all the users
      */
     public List<User> getAllUsers() {
-        //List<User> users = internalUserMap.values().stream().collect(Collectors.toList());
-        List<User> users = new ArrayList<>(internalUserMap.values());
+        List<User> users = new ArrayList<>(userRegistry.getUsers());
         logger.info("{} Users are successfully retrieved , from TourGuideService", users.size());
         return users;
     }
 
+    /**
+     * Retrieve all Users without copying them
+     *
+     * @return A read only, weakly consistent view of the users, ordered by user id
+     */
+    public Collection<User> getUsers() {
+        return userRegistry.getUsers();
+    }
+
+    /**
+     * Retrieve the users whose id is in a range without copying them
+     *
+     * @return A read only, weakly consistent view of the users, see UserRegistry.getUsersBetween
+     */
+    public Collection<User> getUsersBetween(UUID fromInclusive, UUID toExclusive) {
+        return userRegistry.getUsersBetween(fromInclusive, toExclusive);
+    }
+
+    public UserRegistry getUserRegistry() {
+        return userRegistry;
+    }
+
     /**
      * Create a New User if Username doesn't exist in the DB!
      *
      * @param user User
      */
     public void addUser(User user) {
-        if (!internalUserMap.containsKey(user.getUserName())) {
-            internalUserMap.put(user.getUserName(), user);
+        if (userRegistry.add(user)) {
             logger.info("New User successfully added, username:{}, from TourGuideService", user.getUserName());
         } else {
             logger.debug("Add this User with username: {} is rejected with some reason, i.e, already exists in the DB!", user.getUserName());
@@ -108,6 +203,37 @@ public class TourGuideService {
 
 
 
+    /**
+     * Add the users of a snapshot, replacing the users with the same username or id
+     *
+     * @param users the restored users
+     */
+    public void restoreUsers(Collection<User> users) {
+        if (tracker.isStarted()) {
+            throw new IllegalStateException("The users must be restored before the Tracker starts");
+        }
+        users.forEach(userRegistry::put);
+        logger.info("Restored {} users, {} users in the registry", users.size(), userRegistry.size());
+    }
+
+    /**
+     * Apply the records of the journal to the users, then log the new locations and rewards to it.
+     * Before the Tracker starts: replay skips a location older than the last location of the user,
+     * a user already tracked would get none of its journaled history back.
+     *
+     * @param journal     the journal of the previous run
+     * @param attractions the current catalog, to bind the rewards to its attractions
+     * @return the number of records applied
+     */
+    public long replayJournal(LocationJournal journal, AttractionSnapshot attractions) throws IOException {
+        if (tracker.isStarted()) {
+            throw new IllegalStateException("The journal must be replayed before the Tracker starts");
+        }
+        long applied = journal.replay(userRegistry, attractions);
+        setLocationJournal(journal);
+        return applied;
+    }
+
     /**
      * Return the Map : Key is userId, value is Location
      *
@@ -115,92 +241,384 @@ public class TourGuideService {
      */
     public Map<String, Location> getAllCurrentLocations() {
         logger.debug("AllCurrentLocations starts here, from TourGuideService");
-        return getAllUsers().stream().collect(toMap(user -> user.getUserId().toString(),
-                user -> new Location(user.getLastVisitedLocation().location.longitude, user.getLastVisitedLocation().location.latitude)));
+        return getUsers().stream().collect(toMap(user -> user.getUserId().toString(),
+                user -> user.getLastVisitedLocation().location));
+    }
+
+    /**
+     * Visit the last location of the users whose id is greater than the cursor, ordered by user id.
+     * Users are read from the registry one at a time, nothing is collected: the memory used doesn't depend on the number of users.
+     * Users without any location are skipped.
+     *
+     * @param cursor   the id of the last user of the previous page, null to start from the first user
+     * @param limit    the maximum number of locations to visit
+     * @param consumer called with the user id and its last location
+     * @return the cursor of the next page, null when there is no user left
+     */
+    public UUID forEachCurrentLocation(UUID cursor, int limit, BiConsumer<UUID, Location> consumer) {
+        UUID lastUserId = null;
+        int count = 0;
+        for (User user : userRegistry.getUsersAfter(cursor)) {
+            if (count == limit) {
+                // at least one user is left, the next page starts after the last user read
+                return lastUserId;
+            }
+            VisitedLocation lastVisitedLocation = user.getLocationHistory().getLast(user.getUserId());
+            if (lastVisitedLocation != null) {
+                consumer.accept(user.getUserId(), lastVisitedLocation.location);
+                count++;
+            }
+            lastUserId = user.getUserId();
+        }
+        return null;
+    }
+
+    /**
+     * Visit the last location of the users whose location changed after the given version.
+     * The high-water mark is taken before the walk, a user moving during the walk may be visited now and again by the next call.
+     * Only the users that moved are walked, through the version index of the registry.
+     *
+     * @param sinceVersion the version returned by the previous call, 0 to visit every user with a location
+     * @param consumer     called with the user id and its last location
+     * @return the version to pass to the next call
+     */
+    public long forEachLocationChange(long sinceVersion, BiConsumer<UUID, Location> consumer) {
+        LocationChangeIndex locationChanges = userRegistry.getLocationChanges();
+        long highWaterMark = locationChanges.getHighWaterMark();
+        for (User user : locationChanges.getUsersChangedSince(sinceVersion)) {
+            VisitedLocation lastVisitedLocation = user.getLocationHistory().getLast(user.getUserId());
+            if (lastVisitedLocation != null) {
+                consumer.accept(user.getUserId(), lastVisitedLocation.location);
+            }
+        }
+        return highWaterMark;
+    }
+
+    /**
+     * Same as getTripDeals(User), on the TripPricer executor
+     *
+     * @param user User
+     * @return CompletableFuture of the providers
+     */
+    public CompletableFuture<List<Provider>> getTripDealsAsync(User user) {
+        return CompletableFuture.supplyAsync(() -> getTripDeals(user), tripPricerExecutor);
     }
 
     public List<Provider> getTripDeals(User user) {
         int cumulativeRewardPoints = user.getUserRewards().stream().mapToInt(UserReward::getRewardPoints).sum();//i -> i.getRewardPoints()
-        List<Provider> providers = tripPricer.getPrice(tripPricerApiKey, user.getUserId(), user.getUserPreferences().getNumberOfAdults(),
+        List<Provider> providers = tripPricerCache.getPrice(tripPricerApiKey, user.getUserId(), user.getUserPreferences().getNumberOfAdults(),
                 user.getUserPreferences().getNumberOfChildren(), user.getUserPreferences().getTripDuration(), cumulativeRewardPoints);
         user.setTripDeals(providers);
         return providers;
     }
 
+    /**
+     * Fetch the current location of the user from the location source, add it to the history and calculate the rewards.
+     * Concurrent calls for the same user share one fetch, and a location fetched less than the freshness window ago
+     * is returned without a new fetch. Each caller gets its own copy of the shared future, so a timeout or a
+     * cancellation only affects that caller.
+     *
+     * @param user User
+     * @return the tracked location
+     */
     public CompletableFuture<VisitedLocation> trackUserLocation(User user) {
-        //logger.debug("trackUserLocation from TourGuideService, user:{}, currentThread: {}", user.getUserName(), Thread.currentThread().getName());
-        return CompletableFuture.supplyAsync(() -> {
-                   // logger.debug(Thread.currentThread().getName() + " is working");
-           return gpsUtil.getUserLocation(user.getUserId());
-                        }, trackUserExecutorService)
-                .thenApplyAsync(visitedLocation -> {
-                    //logger.debug("addToVisitedLocation, user: {}, currentThread: {}", user.getUserName(), Thread.currentThread().getName());
-                    user.addToVisitedLocations(visitedLocation);
-                        rewardsService.calculateRewards(user);
-                    return visitedLocation;
-                }, trackUserExecutorService);
+        return trackUserLocations(List.of(user)).get(0);
+    }
+
+    /**
+     * Same as trackUserLocation for several users: the users that need a fetch are located with one
+     * getUserLocations request of the location source, at most getLocationBatchSize() users are worth giving.
+     *
+     * @param users the users to track
+     * @return the tracked location of each user, in the order of the users
+     */
+    public List<CompletableFuture<VisitedLocation>> trackUserLocations(List<User> users) {
+        List<CompletableFuture<VisitedLocation>> trackedLocations = new ArrayList<>(users.size());
+        Map<UUID, User> usersToFetch = new LinkedHashMap<>();
+        Map<UUID, CompletableFuture<VisitedLocation>> fetches = new HashMap<>();
+        for (User user : users) {
+            VisitedLocation freshLocation = getFreshLocation(user);
+            if (freshLocation != null) {
+                trackedLocations.add(CompletableFuture.completedFuture(freshLocation));
+                continue;
+            }
+            CompletableFuture<VisitedLocation> tracking = new CompletableFuture<>();
+            CompletableFuture<VisitedLocation> inFlight = trackingsInFlight.putIfAbsent(user.getUserId(), tracking);
+            if (inFlight != null) {
+                trackedLocations.add(inFlight.copy());
+                continue;
+            }
+            usersToFetch.put(user.getUserId(), user);
+            fetches.put(user.getUserId(), tracking);
+            trackedLocations.add(tracking.copy());
+        }
+        if (!usersToFetch.isEmpty()) {
+            fetchUserLocations(usersToFetch, fetches);
+        }
+        return trackedLocations;
+    }
+
+    /**
+     * @return the largest number of users worth giving to one trackUserLocations
+     */
+    public int getLocationBatchSize() {
+        return locationSource.getMaxBatchSize();
+    }
+
+    /**
+     * @return the last location of the user if it was fetched within the freshness window, else null
+     */
+    private VisitedLocation getFreshLocation(User user) {
+        long latestLocationTimestamp = user.getLatestLocationTimestampMillis();
+        if (locationFreshnessMillis <= 0 || latestLocationTimestamp == User.NO_LOCATION_TIMESTAMP
+                || System.currentTimeMillis() - latestLocationTimestamp >= locationFreshnessMillis) {
+            return null;
+        }
+        return user.getLocationHistory().getLast(user.getUserId());
+    }
+
+    private void fetchUserLocations(Map<UUID, User> users, Map<UUID, CompletableFuture<VisitedLocation>> fetches) {
+        CompletableFuture<Map<UUID, VisitedLocation>> request;
+        try {
+            request = CompletableFuture.supplyAsync(() -> requestUserLocations(users.keySet()), gpsExecutor);
+        } catch (RejectedExecutionException e) {
+            // too many gpsUtil calls waiting already: fail these users now rather than queue more
+            request = CompletableFuture.failedFuture(e);
+        }
+        request.whenComplete((locations, e) -> users.forEach((userId, user) -> {
+                    CompletableFuture<VisitedLocation> tracking = fetches.get(userId);
+                    VisitedLocation visitedLocation = e == null ? locations.get(userId) : null;
+                    if (visitedLocation == null) {
+                        // removed first: a call after the completion fetches again, unless the location is still fresh
+                        trackingsInFlight.remove(userId, tracking);
+                        tracking.completeExceptionally(e != null ? e
+                                : new LocationUnavailableException("No location for user " + user.getUserName()));
+                        return;
+                    }
+                    CompletableFuture.runAsync(() -> addUserLocation(user, visitedLocation), gpsExecutor.unlimited())
+                            // evaluated without holding a thread while RewardCentral answers
+                            .thenCompose(added -> rewardsService.calculateRewardsAsync(user))
+                            .thenApply(rewarded -> visitedLocation)
+                            .whenComplete((trackedLocation, trackingError) -> {
+                                trackingsInFlight.remove(userId, tracking);
+                                if (trackingError != null) {
+                                    tracking.completeExceptionally(trackingError);
+                                } else {
+                                    tracking.complete(trackedLocation);
+                                }
+                            });
+                }));
+    }
+
+    private Map<UUID, VisitedLocation> requestUserLocations(Set<UUID> userIds) {
+        if (userIds.size() == 1) {
+            // a single user keeps the failure of the source, a batch only tells which users are missing
+            UUID userId = userIds.iterator().next();
+            return Map.of(userId, locationSource.getUserLocation(userId));
+        }
+        return locationSource.getUserLocations(userIds);
+    }
+
+    /**
+     * Store the tracked location, it is then evaluated once against the fences (the rewards are one of the listeners):
+     * the location is kept whatever the outcome, a failed evaluation is retried by the next one
+     */
+    private void addUserLocation(User user, VisitedLocation visitedLocation) {
+        user.addToVisitedLocations(visitedLocation);
+        user.setLatestLocationTimestampMillis(visitedLocation.timeVisited.getTime());
+        LocationJournal journal = locationJournal;
+        if (journal != null) {
+            journal.appendLocation(visitedLocation);
+        }
     }
 
     public List<NearAttractionDTO> getNearByAttractions(VisitedLocation visitedLocation) {
+        return getNearByAttractionsAsync(visitedLocation).join();
+    }
+
+    /**
+     * Return the 5 nearest attractions, closest first, with their reward points for the user.
+     * The reward points of the 5 attractions are asked to RewardCentral in parallel.
+     *
+     * @param visitedLocation the user location
+     * @return CompletableFuture of the NearAttractionDTO List
+     */
+    public CompletableFuture<List<NearAttractionDTO>> getNearByAttractionsAsync(VisitedLocation visitedLocation) {
+        return getNearByAttractionsAsync(visitedLocation, rewardsService.getAttractionCatalog().getSnapshot());
+    }
+
+    private CompletableFuture<List<NearAttractionDTO>> getNearByAttractionsAsync(VisitedLocation visitedLocation, AttractionSnapshot attractions) {
         int attractionsNearest = 5;
-        return gpsUtil.getAttractions()
-                .stream()
-                .map(attraction -> new AttractionLocalDistance(attraction, visitedLocation, rewardsService))
-                .sorted(Comparator.comparing(AttractionLocalDistance::getDistance))
-                .limit(attractionsNearest)
-                .map(attraction -> new NearAttractionDTO(attraction, visitedLocation, attraction, new RewardCentral()))
+        List<CompletableFuture<NearAttractionDTO>> nearAttractions = Arrays.stream(attractions.findNearest(visitedLocation.location, attractionsNearest))
+                .mapToObj(index -> rewardsService.getRewardPointsAsync(attractions.get(index), visitedLocation.userId)
+                        .thenApply(rewardPoints -> new NearAttractionDTO(attractions.get(index), visitedLocation,
+                                attractions.getDistance(index, visitedLocation.location), rewardPoints)))
                 .collect(Collectors.toList());
+        return CompletableFuture.allOf(nearAttractions.toArray(new CompletableFuture[0]))
+                .thenApply(done -> nearAttractions.stream().map(CompletableFuture::join).collect(Collectors.toList()));
     }
 
+    /**
+     * Bulk version of getUserLocationAsync
+     *
+     * @param userNames     the usernames, duplicates are only looked up once
+     * @param timeoutMillis the longest wait for one user, a late user is reported in the errors
+     * @return CompletableFuture of the locations by username, never completed exceptionally
+     */
+    public CompletableFuture<BulkResultDTO<Location>> getUserLocationsAsync(Collection<String> userNames, long timeoutMillis) {
+        return forEachUserAsync(userNames, timeoutMillis,
+                user -> getUserLocationAsync(user).thenApply(visitedLocation -> visitedLocation.location));
+    }
 
-    private void addShutDownHook() {
-        Runtime.getRuntime().addShutdownHook(new Thread(tracker::stopTracking));
+    /**
+     * Bulk version of getUserRewards
+     *
+     * @param userNames the usernames, duplicates are only looked up once
+     * @return the rewards by username, unknown users are reported in the errors
+     */
+    public BulkResultDTO<List<UserReward>> getUserRewards(Collection<String> userNames) {
+        return forEachUserAsync(userNames, user -> CompletableFuture.completedFuture(getUserRewards(user))).join();
     }
 
-    /**********************************************************************************
-     * <p>
-     * Methods Below: For Internal Testing
+    /**
+     * Bulk version of getNearByAttractionsAsync, every user is compared to the same attraction snapshot
      *
-     **********************************************************************************/
-    private static final String tripPricerApiKey = "test-server-api-key";
-    // Database connection will be used for external users, but for testing purposes internal users are provided and stored in memory
-    private final Map<String, User> internalUserMap = new HashMap<>();
+     * @param userNames     the usernames, duplicates are only looked up once
+     * @param timeoutMillis the longest wait for one user, a late user is reported in the errors
+     * @return CompletableFuture of the nearby attractions by username, never completed exceptionally
+     */
+    public CompletableFuture<BulkResultDTO<List<NearAttractionDTO>>> getNearByAttractionsAsync(Collection<String> userNames, long timeoutMillis) {
+        AttractionSnapshot attractions = rewardsService.getAttractionCatalog().getSnapshot();
+        return forEachUserAsync(userNames, timeoutMillis, user -> getUserLocationAsync(user)
+                .thenCompose(visitedLocation -> getNearByAttractionsAsync(visitedLocation, attractions)));
+    }
+
+    /**
+     * Same as forEachUserAsync without timeout, a user not done within timeoutMillis is reported in the errors
+     */
+    private <T> CompletableFuture<BulkResultDTO<T>> forEachUserAsync(Collection<String> userNames, long timeoutMillis,
+                                                                     Function<User, CompletableFuture<T>> operation) {
+        return forEachUserAsync(userNames, user -> operation.apply(user).orTimeout(timeoutMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Start the operation for every distinct username at once, on the executors of the operation,
+     * and collect each result or failure under its username: one failed user doesn't fail the others.
+     */
+    private <T> CompletableFuture<BulkResultDTO<T>> forEachUserAsync(Collection<String> userNames,
+                                                                     Function<User, CompletableFuture<T>> operation) {
+        Map<String, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        for (String userName : new LinkedHashSet<>(userNames)) {
+            CompletableFuture<T> future;
+            try {
+                future = operation.apply(getUser(userName));
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            futures.put(userName, future);
+        }
+        return CompletableFuture.allOf(futures.values().stream()
+                        .map(future -> future.handle((result, e) -> null))
+                        .toArray(CompletableFuture[]::new))
+                .thenApply(done -> {
+                    BulkResultDTO<T> bulkResult = new BulkResultDTO<>();
+                    futures.forEach((userName, future) -> {
+                        try {
+                            bulkResult.addResult(userName, future.join());
+                        } catch (CompletionException | CancellationException e) {
+                            bulkResult.addError(userName, describe(e));
+                        }
+                    });
+                    logger.info("Bulk request: {} users, {} errors", futures.size(), bulkResult.getErrors().size());
+                    return bulkResult;
+                });
+    }
+
+    private static String describe(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof TimeoutException) {
+            return "timed out";
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+
+    public RewardsService getRewardsService() {
+        return rewardsService;
+    }
+
+    public DownstreamExecutor getGpsExecutor() {
+        return gpsExecutor;
+    }
+
+    public TripPricerCache getTripPricerCache() {
+        return tripPricerCache;
+    }
+
+    public DownstreamExecutor getTripPricerExecutor() {
+        return tripPricerExecutor;
+    }
+
+    /**
+     * A location fetched less than this ago is returned by trackUserLocation without a new fetch, 0 to always fetch
+     */
+    @Value("${tourGuide.location.freshnessSeconds:0}")
+    public void setLocationFreshnessSeconds(long locationFreshnessSeconds) {
+        this.locationFreshnessMillis = TimeUnit.SECONDS.toMillis(locationFreshnessSeconds);
+    }
 
-    private void initializeInternalUsers() {
-        IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
-            String userName = "internalUser" + i;
-            String phone = "000";
-            String email = userName + "@tourGuide.com";
-            User user = new User(UUID.randomUUID(), userName, phone, email);
-            generateUserLocationHistory(user);
+    /**
+     * Let the gpsUtil concurrency follow its latency, or keep it at its maximum
+     */
+    @Value("${tourGuide.executor.adaptiveLimit:true}")
+    public void setAdaptiveConcurrencyLimit(boolean adaptive) {
+        int maxConcurrency = gpsExecutor.getMaxConcurrency();
+        gpsExecutor.setConcurrencyLimit(adaptive ? new AdaptiveConcurrencyLimit(maxConcurrency) : ConcurrencyLimit.fixed(maxConcurrency));
+    }
 
-            internalUserMap.put(userName, user);
-        });
-        logger.info("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users.");
-        logger.debug("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users.");
+    /**
+     * Beyond this many calls waiting for gpsUtil or TripPricer, a new call fails with DownstreamOverloadedException
+     */
+    @Value("${tourGuide.executor.maxQueuedTasks:2147483647}")
+    public void setMaxQueuedDownstreamCalls(int maxQueuedTasks) {
+        gpsExecutor.setMaxQueuedTasks(maxQueuedTasks);
+        tripPricerExecutor.setMaxQueuedTasks(maxQueuedTasks);
     }
 
-    private void generateUserLocationHistory(User user) {
-        IntStream.range(0, 3).forEach(i -> user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(generateRandomLatitude(), generateRandomLongitude()), getRandomTime())));
+    /**
+     * Log every tracked location and every new reward to the journal, null to stop
+     */
+    public void setLocationJournal(LocationJournal locationJournal) {
+        this.locationJournal = locationJournal;
+        rewardsService.setLocationJournal(locationJournal);
     }
 
-    private double generateRandomLongitude() {
-        double leftLimit = -180;
-        double rightLimit = 180;
-        // Random().nextDouble() retourne un nombre aléatoire à virgule flottante supérieur ou égal à 0,0 et inférieur à 1,0.
-        return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+    /**
+     * Start the Tracker once the application is ready, after the users are restored from the snapshot and the journal
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startTracking() {
+        tracker.startTracking();
     }
 
-    private double generateRandomLatitude() {
-        double leftLimit = -85.05112878;
-        double rightLimit = 85.05112878;
-        return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+    private void addShutDownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(tracker::stopTracking));
     }
 
-    private Date getRandomTime() {
-        // java.util.Random.nextInt(int n) : The nextInt(int n) is used to get a random number between 0(inclusive) and the number passed in this argument(n), exclusive
-        LocalDateTime localDateTime = LocalDateTime.now().minusDays(new Random().nextInt(30));
-        return Date.from(localDateTime.toInstant(ZoneOffset.UTC));
+    /**********************************************************************************
+     * <p>
+     * Methods Below: For Internal Testing
+     *
+     **********************************************************************************/
+    private static final String tripPricerApiKey = "test-server-api-key";
+    // Database connection will be used for external users, but for testing purposes internal users are provided and stored in memory
+    private final UserRegistry userRegistry = new UserRegistry();
+
+    private void initializeInternalUsers(int locationHistoryRetention) {
+        long start = System.nanoTime();
+        InternalTestHelper.getUserGenerator(locationHistoryRetention).generate(InternalTestHelper.getInternalUserNumber()).forEach(userRegistry::add);
+        logger.info("Created {} internal test users in {} ms.", InternalTestHelper.getInternalUserNumber(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
     }
 
 }
@@ -1,28 +1,72 @@
 package tourGuide.tracker;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import tourGuide.service.TourGuideService;
 import tourGuide.user.User;
 
+/**
+ * Tracks every user once per polling interval.
+ * The interval is cut in slots of a TrackingWheel and each slot is started at its own time, so the load on gpsUtil
+ * stays flat. At most maxInFlight tracks run at once: when gpsUtil falls behind the Tracker waits for a free slot
+ * instead of queueing more requests. The users of a slot are located in batches of the location source's batch size.
+ */
 public class Tracker extends Thread {
 	private final Logger logger = LoggerFactory.getLogger(Tracker.class);
 	private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(5);
+	private static final int defaultSlotCount = 300;
+	private static final int defaultMaxInFlight = 1000;
 	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
 	private final TourGuideService tourGuideService;
+	private final long pollingIntervalNanos;
+	private final int slotCount;
+	private final int maxInFlight;
+	private final Semaphore inFlight;
+	private final int batchSize;
+	private final TrackingWheel wheel;
+	private final TrackerMetrics metrics;
 	private boolean stop = false;
+	private boolean started = false;
 
 	public Tracker(TourGuideService tourGuideService) {
+		this(tourGuideService, Duration.ofSeconds(trackingPollingInterval), defaultSlotCount, defaultMaxInFlight);
+	}
+
+	public Tracker(TourGuideService tourGuideService, Duration pollingInterval, int slotCount, int maxInFlight) {
 		this.tourGuideService = tourGuideService;
-		
-		executorService.submit(this);
+		this.pollingIntervalNanos = pollingInterval.toNanos();
+		this.slotCount = slotCount;
+		this.metrics = new TrackerMetrics(slotCount);
+		this.maxInFlight = maxInFlight;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.batchSize = Math.max(1, Math.min(tourGuideService.getLocationBatchSize(), maxInFlight));
+		this.wheel = new TrackingWheel(slotCount, tourGuideService::getUsersBetween);
+	}
+
+	/**
+	 * Start the tracking cycles, once the users are loaded: a restore after the first cycle would replace users
+	 * that tracks are still writing to
+	 */
+	public synchronized void startTracking() {
+		if (!started && !stop) {
+			started = true;
+			executorService.submit(this);
+		}
+	}
+
+	public synchronized boolean isStarted() {
+		return started;
 	}
 	
 	/**
@@ -33,33 +77,120 @@ public class Tracker extends Thread {
 		executorService.shutdownNow();
 	}
 	
+	public TrackerMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the number of tracks started and not completed yet
+	 */
+	public int getInFlightCount() {
+		return maxInFlight - inFlight.availablePermits();
+	}
+
 	@Override
 	public void run() {
 
-		StopWatch stopWatch = new StopWatch();
 		while(true) {
 			if(Thread.currentThread().isInterrupted() || stop) {
 				logger.debug("Tracker stopping");
 				break;
 			}
 
-			List<User> users = tourGuideService.getAllUsers();
-			logger.debug("Begin Tracker. Tracking " + users.size() + " users.");
-			stopWatch.start();
-
-			//users.parallelStream().forEach(tourGuideService::trackUserLocation);//user-> tourGuideService.trackUserLocation(user)
-			users.forEach(tourGuideService::trackUserLocation);//user-> tourGuideService.trackUserLocation(user)
+			logger.debug("Begin Tracker.");
+			TrackingCycle cycle = new TrackingCycle();
 
-			stopWatch.stop();
-			logger.debug("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds."); 
-			stopWatch.reset();
 			try {
+				for (int slot = 0; slot < slotCount; slot++) {
+					sleepUntil(cycle.startNanos + pollingIntervalNanos * slot / slotCount);
+					// weakly consistent view of the registry, a user added to an earlier slot waits for the next cycle
+					Collection<User> slotUsers = wheel.getSlot(slot);
+					metrics.updateStaleness(slot, slotUsers, pollingIntervalNanos);
+					List<User> batch = new ArrayList<>(batchSize);
+					for (User user : slotUsers) {
+						batch.add(user);
+						if (batch.size() == batchSize) {
+							track(batch, cycle);
+							batch = new ArrayList<>(batchSize);
+						}
+					}
+					if (!batch.isEmpty()) {
+						track(batch, cycle);
+					}
+				}
+				logger.debug("Tracking " + cycle.userCount + " users.");
+				cycle.allTracksStarted();
+
 				logger.debug("Tracker sleeping");
-				TimeUnit.SECONDS.sleep(trackingPollingInterval);
+				sleepUntil(cycle.startNanos + pollingIntervalNanos);
 			} catch (InterruptedException e) {
 				break;
 			}
 		}
 		
 	}
+
+	private void track(List<User> batch, TrackingCycle cycle) throws InterruptedException {
+		// backpressure: wait here rather than piling up tasks in the executors
+		inFlight.acquire(batch.size());
+		batch.forEach(user -> cycle.trackStarted());
+		try {
+			tourGuideService.trackUserLocations(batch).forEach(tracking -> tracking.whenComplete((visitedLocation, e) -> {
+				inFlight.release();
+				cycle.trackCompleted(e == null);
+			}));
+		} catch (RuntimeException e) {
+			inFlight.release(batch.size());
+			batch.forEach(user -> cycle.trackCompleted(false));
+			logger.error("Tracking of {} users could not be started", batch.size(), e);
+		}
+	}
+
+	/**
+	 * Completion of the tracks of one cycle: the cycle ends when its last track completes, not when it is submitted
+	 */
+	private class TrackingCycle {
+		private final long startNanos = System.nanoTime();
+		// counted by the tracker thread while the slots are started, read by completed() after the last
+		// pendingTracks decrement, which follows allTracksStarted(): visible through pendingTracks
+		private int userCount;
+		// one extra pending count, released once every track is started, so the cycle can't end during the submission
+		private final AtomicInteger pendingTracks = new AtomicInteger(1);
+
+		private void trackStarted() {
+			userCount++;
+			pendingTracks.incrementAndGet();
+		}
+
+		private void trackCompleted(boolean success) {
+			metrics.trackCompleted(success);
+			if (pendingTracks.decrementAndGet() == 0) {
+				completed();
+			}
+		}
+
+		private void allTracksStarted() {
+			if (pendingTracks.decrementAndGet() == 0) {
+				completed();
+			}
+		}
+
+		private void completed() {
+			long duration = System.nanoTime() - startNanos;
+			metrics.cycleCompleted(userCount, duration, pollingIntervalNanos);
+			if (duration > pollingIntervalNanos) {
+				logger.warn("Tracker cycle of {} users completed in {} seconds, longer than the polling interval",
+						userCount, TimeUnit.NANOSECONDS.toSeconds(duration));
+			} else {
+				logger.debug("Tracker Time Elapsed: " + TimeUnit.NANOSECONDS.toSeconds(duration) + " seconds.");
+			}
+		}
+	}
+
+	private static void sleepUntil(long deadlineNanos) throws InterruptedException {
+		long remaining = deadlineNanos - System.nanoTime();
+		if (remaining > 0) {
+			TimeUnit.NANOSECONDS.sleep(remaining);
+		}
+	}
 }
@@ -0,0 +1,130 @@
+package tourGuide.tracker;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+import tourGuide.user.User;
+
+/**
+ * Figures of the Tracker, published through Actuator by TourGuideModule.
+ * The staleness is measured per slot of the TrackingWheel, when the slot comes up: every user is sampled once per
+ * cycle, just before it is tracked again, and the figures of a slot are at most one slot old.
+ */
+public class TrackerMetrics {
+    private final AtomicLong lastCycleDurationNanos = new AtomicLong();
+    private final AtomicInteger lastCycleUserCount = new AtomicInteger();
+    private final LongAdder completedCycles = new LongAdder();
+    private final LongAdder lateCycles = new LongAdder();
+    private final LongAdder successfulTracks = new LongAdder();
+    private final LongAdder failedTracks = new LongAdder();
+    private final AtomicLongArray slotMaxStalenessMillis;
+    private final AtomicIntegerArray slotStaleUserCounts;
+    private volatile LongConsumer stalenessListener = stalenessMillis -> {
+    };
+
+    TrackerMetrics(int slotCount) {
+        slotMaxStalenessMillis = new AtomicLongArray(slotCount);
+        slotStaleUserCounts = new AtomicIntegerArray(slotCount);
+    }
+
+    void cycleCompleted(int userCount, long durationNanos, long pollingIntervalNanos) {
+        lastCycleUserCount.set(userCount);
+        lastCycleDurationNanos.set(durationNanos);
+        completedCycles.increment();
+        if (durationNanos > pollingIntervalNanos) {
+            lateCycles.increment();
+        }
+    }
+
+    void trackCompleted(boolean success) {
+        if (success) {
+            successfulTracks.increment();
+        } else {
+            failedTracks.increment();
+        }
+    }
+
+    /**
+     * Staleness of a user: now minus the time of its last successful track.
+     * Users never tracked, or not tracked for more than the polling interval, are counted as stale;
+     * the staleness of the others is given to the staleness listener.
+     */
+    void updateStaleness(int slot, Collection<User> users, long pollingIntervalNanos) {
+        LongConsumer listener = stalenessListener;
+        long now = System.currentTimeMillis();
+        long staleAfterMillis = TimeUnit.NANOSECONDS.toMillis(pollingIntervalNanos);
+        long maxStaleness = 0;
+        int staleUsers = 0;
+        for (User user : users) {
+            long lastTrack = user.getLatestLocationTimestampMillis();
+            if (lastTrack == User.NO_LOCATION_TIMESTAMP) {
+                staleUsers++;
+                continue;
+            }
+            long staleness = now - lastTrack;
+            listener.accept(staleness);
+            maxStaleness = Math.max(maxStaleness, staleness);
+            if (staleness > staleAfterMillis) {
+                staleUsers++;
+            }
+        }
+        slotMaxStalenessMillis.set(slot, maxStaleness);
+        slotStaleUserCounts.set(slot, staleUsers);
+    }
+
+    /**
+     * @param stalenessListener called with the staleness in milliseconds of every tracked user, once per cycle
+     */
+    public void setStalenessListener(LongConsumer stalenessListener) {
+        this.stalenessListener = stalenessListener;
+    }
+
+    public double getLastCycleDurationSeconds() {
+        return lastCycleDurationNanos.get() / 1e9;
+    }
+
+    public int getLastCycleUserCount() {
+        return lastCycleUserCount.get();
+    }
+
+    public long getCompletedCycles() {
+        return completedCycles.sum();
+    }
+
+    /**
+     * @return the number of cycles that took longer than the polling interval to complete
+     */
+    public long getLateCycles() {
+        return lateCycles.sum();
+    }
+
+    public long getSuccessfulTracks() {
+        return successfulTracks.sum();
+    }
+
+    public long getFailedTracks() {
+        return failedTracks.sum();
+    }
+
+    public double getMaxStalenessSeconds() {
+        long maxStaleness = 0;
+        for (int slot = 0; slot < slotMaxStalenessMillis.length(); slot++) {
+            maxStaleness = Math.max(maxStaleness, slotMaxStalenessMillis.get(slot));
+        }
+        return maxStaleness / 1e3;
+    }
+
+    public int getStaleUserCount() {
+        int staleUsers = 0;
+        for (int slot = 0; slot < slotStaleUserCounts.length(); slot++) {
+            staleUsers += slotStaleUserCounts.get(slot);
+        }
+        return staleUsers;
+    }
+}
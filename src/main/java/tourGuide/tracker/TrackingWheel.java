@@ -0,0 +1,56 @@
+package tourGuide.tracker;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+
+import tourGuide.user.User;
+
+/**
+ * Timing wheel of one tracking interval.
+ * The user id space is cut in slotCount ranges of the same width, each slot is a view of the users whose id is in
+ * its range: a user is tracked at the same offset of every interval, the random ids spread the users evenly over
+ * the interval, and nothing is copied or rebuilt per cycle, the users registered later show up in their slot.
+ */
+public class TrackingWheel {
+    private final UserRange users;
+    // lowest user id of the slots 1 to slotCount - 1, slot 0 takes every id below the first bound
+    private final UUID[] bounds;
+
+    /**
+     * Users whose id is in a range, as weakly consistent views: see UserRegistry.getUsersBetween
+     */
+    @FunctionalInterface
+    public interface UserRange {
+        /**
+         * @param fromInclusive null for no lower bound
+         * @param toExclusive null for no upper bound
+         */
+        Collection<User> getUsersBetween(UUID fromInclusive, UUID toExclusive);
+    }
+
+    public TrackingWheel(int slotCount, UserRange users) {
+        this.users = users;
+        this.bounds = new UUID[slotCount - 1];
+        // slots of 2^64 / slotCount most significant bits each, from Long.MIN_VALUE as UUID compares them signed
+        long width = Long.divideUnsigned(-1L, slotCount);
+        for (int slot = 1; slot < slotCount; slot++) {
+            bounds[slot - 1] = new UUID(Long.MIN_VALUE + slot * width, Long.MIN_VALUE);
+        }
+        // the bounds are only used through UUID.compareTo, sorted by it the slots stay contiguous ranges whatever its order
+        Arrays.sort(bounds);
+    }
+
+    public int getSlotCount() {
+        return bounds.length + 1;
+    }
+
+    /**
+     * @return A read only, weakly consistent view of the users of the slot, iterating it walks the slot's range only
+     */
+    public Collection<User> getSlot(int slot) {
+        UUID from = slot == 0 ? null : bounds[slot - 1];
+        UUID to = slot == bounds.length ? null : bounds[slot];
+        return users.getUsersBetween(from, to);
+    }
+}
@@ -0,0 +1,109 @@
+package tourGuide.user;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Versions of the location writes of the users of one registry, and the users indexed by the version of their last write.
+ * <p>
+ * A write claims a slot first, holding a lower bound of the version it is about to take, and frees it once the user
+ * is indexed with its version. The high-water mark is the last version given, lowered below the bound of every slot
+ * in use: no write with a version up to it is still in progress, and the writers never wait for the readers.
+ * A poll walks the index from its previous high-water mark, it costs the number of users that moved, not the registry size.
+ */
+public class LocationChangeIndex {
+    // one slot per cache line, the writers of different slots don't share a line
+    private static final int SLOT_SPACING = 8;
+
+    private final AtomicLong versions = new AtomicLong();
+    private final int slotCount = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+    // 0 for a free slot, else 1 + the version given when the slot was claimed
+    private final AtomicLongArray slots = new AtomicLongArray(slotCount * SLOT_SPACING);
+    private final ConcurrentNavigableMap<Long, User> usersByVersion = new ConcurrentSkipListMap<>();
+
+    /**
+     * Claim a slot before a write: every version given from now on is above its bound
+     *
+     * @return the slot, to give to commit
+     */
+    int begin() {
+        long lowerBound = versions.get() + 1;
+        int start = (int) (Thread.currentThread().threadId() % slotCount);
+        for (int i = start; ; i = (i + 1) % slotCount) {
+            if (slots.get(i * SLOT_SPACING) == 0 && slots.compareAndSet(i * SLOT_SPACING, 0, lowerBound)) {
+                return i;
+            }
+            if ((i + 1) % slotCount == start) {
+                // more writes in progress than slots: wait for one to complete
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Give the write its version, index the user with it and free the slot
+     */
+    void commit(User user, int slot) {
+        try {
+            // per user: two writes of the same user leave one entry, at the version of the last one
+            synchronized (user) {
+                long version = versions.incrementAndGet();
+                long previousVersion = user.swapLocationVersion(version);
+                // removed first, a poll never sees the user twice; missed now, it is seen by the next poll
+                if (previousVersion != 0) {
+                    usersByVersion.remove(previousVersion, user);
+                }
+                usersByVersion.put(version, user);
+            }
+        } finally {
+            slots.set(slot * SLOT_SPACING, 0);
+        }
+    }
+
+    /**
+     * Index a user that has a location history from before it joined the registry
+     */
+    void add(User user) {
+        commit(user, begin());
+    }
+
+    /**
+     * Drop a user that left the registry
+     */
+    void remove(User user) {
+        long version = user.getLocationVersion();
+        if (version != 0) {
+            usersByVersion.remove(version, user);
+        }
+    }
+
+    /**
+     * Return a version such that every location write with a version lower or equal is visible to the caller.
+     * A reader that polls the users changed since its previous high-water mark never misses a write.
+     *
+     * @return the high-water mark of the location versions
+     */
+    public long getHighWaterMark() {
+        // read before the slots: a write claiming its slot after the scan takes a version above this one
+        long highWaterMark = versions.get();
+        for (int i = 0; i < slotCount; i++) {
+            long lowerBound = slots.get(i * SLOT_SPACING);
+            if (lowerBound != 0) {
+                highWaterMark = Math.min(highWaterMark, lowerBound - 1);
+            }
+        }
+        return highWaterMark;
+    }
+
+    /**
+     * @return A read only, weakly consistent view of the users whose last location write is after the version,
+     * in the order of their writes
+     */
+    public Collection<User> getUsersChangedSince(long version) {
+        return Collections.unmodifiableCollection(usersByVersion.tailMap(version, false).values());
+    }
+}
@@ -0,0 +1,133 @@
+package tourGuide.user;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Location history of one user, stored as a ring buffer of primitive arrays (latitude, longitude, time).
+ * A point costs 24 bytes instead of a VisitedLocation, its Location, its Date and a reference to the user id.
+ * When the retention is reached the oldest point is overwritten.
+ * Every point gets a sequence number (0 for the first point ever added) that survives the overwrites,
+ * VisitedLocation objects are only built when the history is read through the User API.
+ */
+public class LocationHistory {
+    private static final int INITIAL_CAPACITY = 4;
+    public static final int DEFAULT_RETENTION = 1000;
+
+    private final int retention;
+    private double[] latitudes;
+    private double[] longitudes;
+    private long[] times;
+    // sequence number of the next point, also the number of points ever added
+    private long nextSequence;
+    private int size;
+
+    public LocationHistory() {
+        this(DEFAULT_RETENTION);
+    }
+
+    public LocationHistory(int retention) {
+        if (retention < 1) {
+            throw new IllegalArgumentException("The location history retention must be at least 1, got " + retention);
+        }
+        this.retention = retention;
+        int capacity = Math.min(INITIAL_CAPACITY, retention);
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        times = new long[capacity];
+    }
+
+    /**
+     * Visitor of the points of a history, called without creating any object
+     */
+    @FunctionalInterface
+    public interface PointVisitor {
+        void visit(long sequence, double latitude, double longitude, long time);
+    }
+
+    public synchronized void add(double latitude, double longitude, long time) {
+        if (size == latitudes.length && size < retention) {
+            grow();
+        }
+        int slot = (int) (nextSequence % latitudes.length);
+        latitudes[slot] = latitude;
+        longitudes[slot] = longitude;
+        times[slot] = time;
+        nextSequence++;
+        size = Math.min(size + 1, latitudes.length);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of points ever added, i.e. the sequence number of the next point
+     */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Visit the retained points whose sequence number is at least fromSequence, oldest first
+     */
+    public synchronized void forEachSince(long fromSequence, PointVisitor visitor) {
+        long first = Math.max(fromSequence, nextSequence - size);
+        for (long sequence = first; sequence < nextSequence; sequence++) {
+            int slot = (int) (sequence % latitudes.length);
+            visitor.visit(sequence, latitudes[slot], longitudes[slot], times[slot]);
+        }
+    }
+
+    public List<VisitedLocation> toVisitedLocations(UUID userId) {
+        return toVisitedLocationsSince(0, userId);
+    }
+
+    public synchronized List<VisitedLocation> toVisitedLocationsSince(long fromSequence, UUID userId) {
+        List<VisitedLocation> visitedLocations = new ArrayList<>(size);
+        forEachSince(fromSequence, (sequence, latitude, longitude, time) ->
+                visitedLocations.add(new VisitedLocation(userId, new Location(latitude, longitude), new Date(time))));
+        return visitedLocations;
+    }
+
+    /**
+     * @return the last point, null if the history is empty
+     */
+    public synchronized VisitedLocation getLast(UUID userId) {
+        if (size == 0) {
+            return null;
+        }
+        int slot = (int) ((nextSequence - 1) % latitudes.length);
+        return new VisitedLocation(userId, new Location(latitudes[slot], longitudes[slot]), new Date(times[slot]));
+    }
+
+    /**
+     * Forget every point, the sequence numbers are not reset
+     */
+    public synchronized void clear() {
+        size = 0;
+    }
+
+    private void grow() {
+        int capacity = (int) Math.min((long) latitudes.length * 2, retention);
+        double[] newLatitudes = new double[capacity];
+        double[] newLongitudes = new double[capacity];
+        long[] newTimes = new long[capacity];
+        long first = nextSequence - size;
+        for (int i = 0; i < size; i++) {
+            int slot = (int) ((first + i) % latitudes.length);
+            int newSlot = (int) ((first + i) % capacity);
+            newLatitudes[newSlot] = latitudes[slot];
+            newLongitudes[newSlot] = longitudes[slot];
+            newTimes[newSlot] = times[slot];
+        }
+        latitudes = newLatitudes;
+        longitudes = newLongitudes;
+        times = newTimes;
+    }
+}
@@ -1,27 +1,53 @@
 package tourGuide.user;
 
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 
 import gpsUtil.location.VisitedLocation;
 import tripPricer.Provider;
 
 public class User {
+    /**
+     * Latest location timestamp of a user never located
+     */
+    public static final long NO_LOCATION_TIMESTAMP = Long.MIN_VALUE;
     private final UUID userId;
     private final String userName;
     private String phoneNumber;
     private String emailAddress;
-    private Date latestLocationTimestamp;
-    private List<VisitedLocation> visitedLocations = new ArrayList<>();
-    private List<UserReward> userRewards = new ArrayList<>();
+    // epoch millis, read by the tracker and the request threads: written after the location is added to the history,
+    // so a thread that reads a timestamp also sees the location it stamps
+    private volatile long latestLocationTimestamp = NO_LOCATION_TIMESTAMP;
+    private final LocationHistory locationHistory;
+    // the index of the registry of the user, null until it is added to one
+    private volatile LocationChangeIndex locationChangeIndex;
+    private volatile long locationVersion;
+    // one reward per attraction name, gpsUtil gives new ids on every getAttractions();
+    // the queue only keeps the rewards in the order they were granted
+    private final ConcurrentMap<String, UserReward> userRewardsByAttraction = new ConcurrentHashMap<>();
+    private final Queue<UserReward> userRewards = new ConcurrentLinkedQueue<>();
     private UserPreferences userPreferences = new UserPreferences();
     private List<Provider> tripDeals = new ArrayList<>();
+    // sequence number of the first visited location not checked for rewards yet,
+    // valid only for the rules version it was written with
+    private volatile long rewardWatermark;
+    private volatile long rewardWatermarkVersion;
 
     public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
+        this(userId, userName, phoneNumber, emailAddress, LocationHistory.DEFAULT_RETENTION);
+    }
+
+    /**
+     * @param locationHistoryRetention the maximum number of visited locations kept, the oldest are dropped first
+     */
+    public User(UUID userId, String userName, String phoneNumber, String emailAddress, int locationHistoryRetention) {
         this.userId = userId;
         this.userName = userName;
         this.phoneNumber = phoneNumber;
         this.emailAddress = emailAddress;
+        this.locationHistory = new LocationHistory(locationHistoryRetention);
     }
 
     public UUID getUserId() {
@@ -49,40 +75,136 @@ public class User {
     }
 
     public void setLatestLocationTimestamp(Date latestLocationTimestamp) {
-        this.latestLocationTimestamp = latestLocationTimestamp;
+        setLatestLocationTimestampMillis(latestLocationTimestamp == null
+                ? NO_LOCATION_TIMESTAMP : latestLocationTimestamp.getTime());
     }
 
+    /**
+     * @return a copy of the latest location timestamp, null if the user was never located
+     */
     public Date getLatestLocationTimestamp() {
+        long timestamp = latestLocationTimestamp;
+        return timestamp == NO_LOCATION_TIMESTAMP ? null : new Date(timestamp);
+    }
+
+    public void setLatestLocationTimestampMillis(long latestLocationTimestamp) {
+        this.latestLocationTimestamp = latestLocationTimestamp;
+    }
+
+    /**
+     * @return the latest location timestamp in epoch millis, NO_LOCATION_TIMESTAMP if the user was never located
+     */
+    public long getLatestLocationTimestampMillis() {
         return latestLocationTimestamp;
     }
 
     public void addToVisitedLocations(VisitedLocation visitedLocation) {
-        visitedLocations.add(visitedLocation);
+        LocationChangeIndex index = locationChangeIndex;
+        if (index == null) {
+            locationHistory.add(visitedLocation.location.latitude, visitedLocation.location.longitude,
+                    visitedLocation.timeVisited.getTime());
+            return;
+        }
+        int slot = index.begin();
+        try {
+            locationHistory.add(visitedLocation.location.latitude, visitedLocation.location.longitude,
+                    visitedLocation.timeVisited.getTime());
+        } finally {
+            index.commit(this, slot);
+        }
+    }
+
+    /**
+     * @return the version of the last location write of this user in its registry, 0 if it had none
+     */
+    public long getLocationVersion() {
+        return locationVersion;
+    }
+
+    long swapLocationVersion(long version) {
+        long previousVersion = locationVersion;
+        locationVersion = version;
+        return previousVersion;
+    }
+
+    /**
+     * Index the location writes of the user in the index of its registry, null when it leaves the registry
+     */
+    void setLocationChangeIndex(LocationChangeIndex locationChangeIndex) {
+        LocationChangeIndex previous = this.locationChangeIndex;
+        if (previous != null) {
+            previous.remove(this);
+        }
+        this.locationChangeIndex = locationChangeIndex;
+        if (locationChangeIndex != null && locationHistory.size() > 0) {
+            locationChangeIndex.add(this);
+        }
     }
 
+    /**
+     * @return A copy of the retained visited locations, oldest first
+     */
     public List<VisitedLocation> getVisitedLocations() {
-        return visitedLocations;
+        return locationHistory.toVisitedLocations(userId);
     }
 
-    public void clearVisitedLocations() {
-        visitedLocations.clear();
+    /**
+     * @return the retained visited locations whose sequence number is at least fromSequence, oldest first
+     */
+    public List<VisitedLocation> getVisitedLocationsSince(long fromSequence) {
+        return locationHistory.toVisitedLocationsSince(fromSequence, userId);
     }
 
-    public void addUserReward(UserReward userReward) {
-    /*     if(userRewards.stream().filter(r -> !r.attraction.attractionName.equals(userReward.attraction.attractionName)).count() == 0) {
-            userRewards.add(userReward);
-        }*/
+    /**
+     * @return the primitive history, to iterate the locations without creating VisitedLocation objects
+     */
+    public LocationHistory getLocationHistory() {
+        return locationHistory;
+    }
 
-        List<UserReward> userRewardList = new CopyOnWriteArrayList<>(userRewards);
+    public void clearVisitedLocations() {
+        locationHistory.clear();
+    }
 
-        if (userRewardList.stream().noneMatch(r -> r.attraction.attractionName.equals(userReward.attraction.attractionName))) {
-            userRewards.add(userReward);
+    /**
+     * Add the reward unless the user already has one for the same attraction, safe to call from several threads
+     *
+     * @return true if the reward was added
+     */
+    public boolean addUserReward(UserReward userReward) {
+        if (userRewardsByAttraction.putIfAbsent(userReward.attraction.attractionName, userReward) != null) {
+            return false;
         }
+        userRewards.add(userReward);
+        return true;
+    }
 
+    public boolean hasRewardFor(String attractionName) {
+        return userRewardsByAttraction.containsKey(attractionName);
     }
 
+    /**
+     * @return A copy of the rewards, in the order they were granted
+     */
     public List<UserReward> getUserRewards() {
-        return userRewards;
+        return new ArrayList<>(userRewards);
+    }
+
+    public long getRewardWatermark() {
+        return rewardWatermark;
+    }
+
+    public long getRewardWatermarkVersion() {
+        return rewardWatermarkVersion;
+    }
+
+    public synchronized void setRewardWatermark(long rewardWatermark, long rewardWatermarkVersion) {
+        this.rewardWatermark = rewardWatermark;
+        this.rewardWatermarkVersion = rewardWatermarkVersion;
+    }
+
+    public synchronized void resetRewardWatermark() {
+        setRewardWatermark(0, 0);
     }
 
     public UserPreferences getUserPreferences() {
@@ -94,14 +216,11 @@ public class User {
     }
 
     public VisitedLocation getLastVisitedLocation() {
-        /*try {
-            VisitedLocation lastVisitedLocation = Collections.max(visitedLocations, Comparator.comparing(lastLocation -> lastLocation.timeVisited));
-            return lastVisitedLocation;
-        } catch (Exception e) {
-            //e.printStackTrace();
-            return new VisitedLocation(userId, new Location(0, 0), new Date());
-        }*/
-        return visitedLocations.get(visitedLocations.size() - 1);
+        VisitedLocation lastVisitedLocation = locationHistory.getLast(userId);
+        if (lastVisitedLocation == null) {
+            throw new IndexOutOfBoundsException("The user " + userName + " has no visited location");
+        }
+        return lastVisitedLocation;
     }
 
     public void setTripDeals(List<Provider> tripDeals) {
@@ -0,0 +1,119 @@
+package tourGuide.user;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In memory store of the users, indexed by username and by user id.
+ * Both indexes are concurrent maps: adds from request threads never block the tracker,
+ * and the views returned by getUsers() are weakly consistent, they are iterated without copying the registry.
+ * The id index is sorted, so the users can be paged with a user id as cursor.
+ * The users are also indexed by the version of their last location write, see LocationChangeIndex.
+ */
+public class UserRegistry {
+    private final ConcurrentMap<String, User> usersByName = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<UUID, User> usersById = new ConcurrentSkipListMap<>();
+    private final Collection<User> users = Collections.unmodifiableCollection(usersById.values());
+    private final LocationChangeIndex locationChanges = new LocationChangeIndex();
+
+    /**
+     * Add the user unless its username or its id is already taken
+     *
+     * @return true if the user was added
+     */
+    public boolean add(User user) {
+        if (usersByName.putIfAbsent(user.getUserName(), user) != null) {
+            return false;
+        }
+        if (usersById.putIfAbsent(user.getUserId(), user) != null) {
+            usersByName.remove(user.getUserName(), user);
+            return false;
+        }
+        user.setLocationChangeIndex(locationChanges);
+        return true;
+    }
+
+    /**
+     * Add the user, replacing the users with the same username or the same id, i.e. on a restore
+     */
+    public void put(User user) {
+        User previousByName = usersByName.put(user.getUserName(), user);
+        if (previousByName != null && previousByName != user) {
+            usersById.remove(previousByName.getUserId(), previousByName);
+            previousByName.setLocationChangeIndex(null);
+        }
+        User previousById = usersById.put(user.getUserId(), user);
+        if (previousById != null && previousById != user) {
+            usersByName.remove(previousById.getUserName(), previousById);
+            previousById.setLocationChangeIndex(null);
+        }
+        user.setLocationChangeIndex(locationChanges);
+    }
+
+    public LocationChangeIndex getLocationChanges() {
+        return locationChanges;
+    }
+
+    public boolean containsUserName(String userName) {
+        return usersByName.containsKey(userName);
+    }
+
+    /**
+     * @return the user, null if unknown
+     */
+    public User getByUserName(String userName) {
+        return usersByName.get(userName);
+    }
+
+    /**
+     * @return the user, null if unknown
+     */
+    public User getById(UUID userId) {
+        return usersById.get(userId);
+    }
+
+    public int size() {
+        return usersByName.size();
+    }
+
+    /**
+     * @return A read only, weakly consistent view of the users ordered by user id:
+     * users added during an iteration may or may not be visited, nothing is copied
+     */
+    public Collection<User> getUsers() {
+        return users;
+    }
+
+    /**
+     * @return A read only, weakly consistent view of the users whose id is strictly greater than the cursor,
+     * ordered by user id, every user if the cursor is null
+     */
+    public Collection<User> getUsersAfter(UUID cursor) {
+        if (cursor == null) {
+            return users;
+        }
+        return Collections.unmodifiableCollection(usersById.tailMap(cursor, false).values());
+    }
+
+    /**
+     * @param fromInclusive the lowest user id of the range, null for no lower bound
+     * @param toExclusive the user id above the range, null for no upper bound
+     * @return A read only, weakly consistent view of the users whose id is in the range, ordered by user id:
+     * nothing is copied, the users added later to the range are visited by the next iterations of the view
+     */
+    public Collection<User> getUsersBetween(UUID fromInclusive, UUID toExclusive) {
+        ConcurrentNavigableMap<UUID, User> range = usersById;
+        if (fromInclusive != null) {
+            range = range.tailMap(fromInclusive, true);
+        }
+        if (toExclusive != null) {
+            range = range.headMap(toExclusive, false);
+        }
+        return Collections.unmodifiableCollection(range.values());
+    }
+}
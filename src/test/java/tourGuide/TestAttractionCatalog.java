@@ -0,0 +1,118 @@
+package tourGuide;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+import tourGuide.attraction.AttractionCatalog;
+import tourGuide.attraction.AttractionSnapshot;
+import tourGuide.attraction.DistanceKernel;
+import tourGuide.service.RewardsService;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class TestAttractionCatalog {
+
+    private final GpsUtil gpsUtil = new GpsUtil();
+    private final RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+    private final AttractionCatalog attractionCatalog = new AttractionCatalog(gpsUtil);
+    private final AttractionSnapshot attractions = attractionCatalog.getSnapshot();
+
+    @Test
+    public void findWithinMatchesFullScan() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            Location location = new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+            double radius = new double[]{10, 200, 2000}[i % 3];
+
+            List<Attraction> expected = attractions.getAttractions().stream()
+                    .filter(attraction -> !(rewardsService.getDistance(attraction, location) > radius))
+                    .collect(Collectors.toList());
+
+            assertThat(attractions.findWithin(location, radius)).containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    @Test
+    public void findNearestMatchesSortedScan() {
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            Location location = new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+
+            List<Attraction> expected = attractions.getAttractions().stream()
+                    .sorted(Comparator.comparingDouble(attraction -> rewardsService.getDistance(attraction, location)))
+                    .limit(5)
+                    .collect(Collectors.toList());
+
+            assertEquals(expected, attractions.findNearestAttractions(location, 5));
+        }
+    }
+
+    @Test
+    public void cachedCellCandidatesGiveTheExactNearest() {
+        Attraction disneyland = attractions.getAttractions().stream()
+                .filter(attraction -> attraction.attractionName.equals("Disneyland")).findFirst().orElseThrow();
+        Random random = new Random(11);
+        for (int i = 0; i < 500; i++) {
+            // users crowded around one city: a handful of cells, each one computed once
+            Location location = new Location(disneyland.latitude + random.nextDouble() - 0.5, disneyland.longitude + random.nextDouble() - 0.5);
+            int count = new int[]{1, 5, attractions.size() + 1}[i % 3];
+
+            List<Attraction> expected = attractions.getAttractions().stream()
+                    .sorted(Comparator.comparingDouble(attraction -> rewardsService.getDistance(attraction, location)))
+                    .limit(count)
+                    .collect(Collectors.toList());
+
+            assertEquals(expected, attractions.findNearestAttractions(location, count));
+        }
+        assertThat(attractions.getNearestCellCount()).isLessThanOrEqualTo(3 * 121);
+        assertEquals(0, attractions.findNearest(new Location(0, 0), 0).length);
+    }
+
+    @Test
+    public void snapshotDistanceMatchesRewardsService() {
+        Location location = new Location(40.7, -74.0);
+        for (int index = 0; index < attractions.size(); index++) {
+            assertEquals(rewardsService.getDistance(attractions.get(index), location), attractions.getDistance(index, location));
+        }
+    }
+
+    @Test
+    public void kernelDistancesMatchRewardsServiceWithinTolerance() {
+        DistanceKernel distanceKernel = attractions.getDistanceKernel();
+        double[] distances = new double[distanceKernel.size()];
+        Random random = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            Location location = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            distanceKernel.distances(location.latitude, location.longitude, distances);
+            for (int index = 0; index < attractions.size(); index++) {
+                assertEquals(rewardsService.getDistance(attractions.get(index), location), distances[index], DistanceKernel.TOLERANCE_MILES);
+            }
+        }
+        Attraction attraction = attractions.get(0);
+        assertEquals(0, distanceKernel.distance(0, attraction.latitude, attraction.longitude), DistanceKernel.TOLERANCE_MILES);
+    }
+
+    @Test
+    public void findWithinHugeRadiusReturnsAllAttractions() {
+        assertEquals(attractions.size(), attractions.findWithin(new Location(0, 0), Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    public void refreshOfAnUnchangedCatalogKeepsSnapshotAndIds() {
+        assertFalse(attractionCatalog.refresh());
+
+        assertSame(attractions, attractionCatalog.getSnapshot());
+        Attraction attraction = attractions.get(0);
+        assertEquals(0, attractionCatalog.getSnapshot().indexOf(attraction.attractionId));
+    }
+}
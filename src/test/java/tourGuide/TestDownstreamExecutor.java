@@ -0,0 +1,132 @@
+package tourGuide;
+
+import org.junit.jupiter.api.Test;
+import tourGuide.concurrency.AdaptiveConcurrencyLimit;
+import tourGuide.concurrency.ConcurrencyLimit;
+import tourGuide.concurrency.DownstreamExecutor;
+import tourGuide.concurrency.ExecutionMode;
+import tourGuide.exception.DownstreamOverloadedException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestDownstreamExecutor {
+
+    @Test
+    public void tasksBeyondTheLimitWaitInTheQueue() throws InterruptedException {
+        DownstreamExecutor executor = new DownstreamExecutor("test", ExecutionMode.PLATFORM_THREADS, 10, ConcurrencyLimit.fixed(2));
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<CompletableFuture<Void>> tasks = IntStream.range(0, 6).mapToObj(i -> CompletableFuture.runAsync(() -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+        }, executor)).toList();
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(2, executor.getActiveTaskCount());
+        assertEquals(4, executor.getQueuedTaskCount());
+
+        release.countDown();
+        tasks.forEach(CompletableFuture::join);
+        executor.shutdown();
+
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, executor.getQueuedTaskCount());
+    }
+
+    @Test
+    public void followUpWorkDoesNotWaitForTheCallThreads() {
+        DownstreamExecutor executor = new DownstreamExecutor("test", ExecutionMode.PLATFORM_THREADS, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> call = CompletableFuture.runAsync(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, executor);
+
+        // the only call thread is busy, the follow-up runs on its own threads
+        CompletableFuture<Void> followUp = CompletableFuture.runAsync(() -> {
+        }, executor.unlimited());
+
+        followUp.orTimeout(5, TimeUnit.SECONDS).join();
+        release.countDown();
+        call.join();
+        executor.shutdown();
+    }
+
+    @Test
+    public void tasksBeyondTheQueueAreRejected() {
+        DownstreamExecutor executor = new DownstreamExecutor("test", ExecutionMode.PLATFORM_THREADS, 10, ConcurrencyLimit.fixed(1));
+        executor.setMaxQueuedTasks(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        CompletableFuture<Void> running = CompletableFuture.runAsync(blocked, executor);
+        CompletableFuture<Void> queued = CompletableFuture.runAsync(blocked, executor);
+        while (executor.getActiveTaskCount() == 0 || executor.getQueuedTaskCount() == 0) {
+            Thread.onSpinWait();
+        }
+        assertThrows(DownstreamOverloadedException.class, () -> CompletableFuture.runAsync(blocked, executor));
+
+        release.countDown();
+        running.join();
+        queued.join();
+        executor.shutdown();
+        assertEquals(1, executor.getRejectedTaskCount());
+    }
+
+    @Test
+    public void adaptiveLimitGrowsWhileTheLatencyHoldsAndShrinksWhenItRises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 100, 1.5);
+        long fast = TimeUnit.MILLISECONDS.toNanos(10);
+        for (int i = 0; i < 500; i++) {
+            limit.onSample(fast, limit.getLimit());
+        }
+        assertEquals(100, limit.getLimit());
+
+        // the dependency slows down under the load: the limit backs off
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(fast * 5, limit.getLimit());
+        }
+        int slowedLimit = limit.getLimit();
+        assertTrue(slowedLimit < 50, "limit after the slowdown: " + slowedLimit);
+
+        // and comes back once the dependency recovers
+        for (int i = 0; i < 1000; i++) {
+            limit.onSample(fast, limit.getLimit());
+        }
+        assertEquals(100, limit.getLimit());
+    }
+
+    @Test
+    public void adaptiveLimitDoesNotGrowWhenItIsNotUsed() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 100, 1.5);
+        for (int i = 0; i < 500; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), 2);
+        }
+
+        assertEquals(10, limit.getLimit());
+    }
+}
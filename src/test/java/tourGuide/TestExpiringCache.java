@@ -0,0 +1,84 @@
+package tourGuide;
+
+import org.junit.jupiter.api.Test;
+import tourGuide.cache.ExpiringCache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestExpiringCache {
+
+    @Test
+    public void concurrentMissesLoadOnce() throws InterruptedException {
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(Duration.ofMinutes(1), 10);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(10);
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> cache.get("key", key -> {
+                loads.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 42;
+            }), executorService));
+        }
+        TimeUnit.MILLISECONDS.sleep(200);
+        release.countDown();
+
+        futures.forEach(future -> assertEquals(42, future.join()));
+        executorService.shutdown();
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(9, cache.getHitCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBeyondMaximumSize() {
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(Duration.ofMinutes(1), 2);
+        cache.get(1, key -> key);
+        cache.get(2, key -> key);
+        cache.get(1, key -> key);
+        cache.get(3, key -> key);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(1, key -> loads.incrementAndGet());
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    public void expiredEntriesAreReloaded() throws InterruptedException {
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(Duration.ofMillis(10), 10);
+        cache.get(1, key -> 1);
+        TimeUnit.MILLISECONDS.sleep(20);
+
+        assertEquals(2, cache.get(1, key -> 2));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void failedLoadsAreNotCached() {
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(Duration.ofMinutes(1), 10);
+        assertThrows(IllegalStateException.class, () -> cache.get(1, key -> {
+            throw new IllegalStateException("RewardCentral down");
+        }));
+
+        assertEquals(1, cache.get(1, key -> 1));
+    }
+}
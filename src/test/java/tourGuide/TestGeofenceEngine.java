@@ -0,0 +1,100 @@
+package tourGuide;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import tourGuide.attraction.AttractionCatalog;
+import tourGuide.geofence.GeofenceEngine;
+import tourGuide.geofence.GeofenceEvent;
+import tourGuide.user.User;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestGeofenceEngine {
+
+    private final AttractionCatalog attractionCatalog = new AttractionCatalog(new GpsUtil());
+    private final Attraction attraction = attractionCatalog.getSnapshot().get(0);
+    private final Location far = new Location(-80, 0);
+
+    @Test
+    public void entersAreEmittedOncePerEntry() {
+        GeofenceEngine geofenceEngine = new GeofenceEngine(attractionCatalog, 10);
+        List<GeofenceEvent> events = new ArrayList<>();
+        geofenceEngine.addListener(event -> {
+            events.add(event);
+            return null;
+        });
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+        visit(user, far);
+        geofenceEngine.evaluate(user).join();
+        assertEquals(0, events.size());
+
+        // staying near the attraction is one entry
+        visit(user, attraction);
+        geofenceEngine.evaluate(user).join();
+        visit(user, attraction);
+        geofenceEngine.evaluate(user).join();
+        assertEquals(1, events.size());
+        assertSame(attraction, events.get(0).attraction());
+        assertSame(user, events.get(0).user());
+
+        // leaving and coming back is a new entry
+        visit(user, far);
+        visit(user, attraction);
+        geofenceEngine.evaluate(user).join();
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    public void failedEventsAreEmittedAgain() {
+        GeofenceEngine geofenceEngine = new GeofenceEngine(attractionCatalog, 10);
+        List<GeofenceEvent> events = new ArrayList<>();
+        geofenceEngine.addListener(event -> {
+            events.add(event);
+            return events.size() == 1 ? CompletableFuture.failedFuture(new IllegalStateException()) : null;
+        });
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        visit(user, attraction);
+
+        assertThrows(CompletionException.class, () -> geofenceEngine.evaluate(user).join());
+        geofenceEngine.evaluate(user).join();
+        geofenceEngine.evaluate(user).join();
+
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    public void radiusChangeEvaluatesTheHistoryAgain() {
+        GeofenceEngine geofenceEngine = new GeofenceEngine(attractionCatalog, 10);
+        List<GeofenceEvent> events = new ArrayList<>();
+        geofenceEngine.addListener(event -> {
+            events.add(event);
+            return null;
+        });
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        visit(user, new Location(attraction.latitude + 1, attraction.longitude));
+        geofenceEngine.evaluate(user).join();
+        assertEquals(0, events.size());
+
+        geofenceEngine.setRadiusMiles(100);
+        geofenceEngine.evaluate(user).join();
+
+        assertEquals(1, events.stream().filter(event -> event.attraction() == attraction).count());
+    }
+
+    private static void visit(User user, Location location) {
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, new Date()));
+    }
+}
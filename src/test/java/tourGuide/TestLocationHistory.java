@@ -0,0 +1,95 @@
+package tourGuide;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import tourGuide.user.LocationHistory;
+import tourGuide.user.User;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLocationHistory {
+
+    @Test
+    public void keepsPointsInOrderWhileGrowing() {
+        LocationHistory history = new LocationHistory(100);
+        for (int i = 0; i < 10; i++) {
+            history.add(i, -i, i * 1000L);
+        }
+
+        List<VisitedLocation> visitedLocations = history.toVisitedLocations(UUID.randomUUID());
+        assertEquals(10, visitedLocations.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, visitedLocations.get(i).location.latitude, 0);
+            assertEquals(-i, visitedLocations.get(i).location.longitude, 0);
+            assertEquals(i * 1000L, visitedLocations.get(i).timeVisited.getTime());
+        }
+    }
+
+    @Test
+    public void dropsOldestPointsBeyondRetention() {
+        LocationHistory history = new LocationHistory(5);
+        for (int i = 0; i < 12; i++) {
+            history.add(i, i, i);
+        }
+
+        List<Long> sequences = new ArrayList<>();
+        history.forEachSince(0, (sequence, latitude, longitude, time) -> {
+            assertEquals(sequence, (long) latitude);
+            sequences.add(sequence);
+        });
+        assertEquals(5, history.size());
+        assertEquals(12, history.getNextSequence());
+        assertEquals(List.of(7L, 8L, 9L, 10L, 11L), sequences);
+        assertEquals(11, history.getLast(UUID.randomUUID()).location.latitude, 0);
+        assertEquals(2, history.toVisitedLocationsSince(10, UUID.randomUUID()).size());
+    }
+
+    @Test
+    public void clearKeepsSequence() {
+        LocationHistory history = new LocationHistory(5);
+        history.add(1, 1, 1);
+        history.add(2, 2, 2);
+        history.clear();
+
+        assertNull(history.getLast(UUID.randomUUID()));
+        assertEquals(0, history.toVisitedLocations(UUID.randomUUID()).size());
+        history.add(3, 3, 3);
+        assertEquals(1, history.toVisitedLocationsSince(2, UUID.randomUUID()).size());
+    }
+
+    @Test
+    public void latestTimestampIsPublishedWithItsLocation() throws InterruptedException {
+        User user = new User(UUID.randomUUID(), "user", "000", "user@tourGuide.com", 10);
+        assertEquals(User.NO_LOCATION_TIMESTAMP, user.getLatestLocationTimestampMillis());
+        assertNull(user.getLatestLocationTimestamp());
+
+        int writes = 100000;
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= writes; i++) {
+                // same order as a track: the location, then its timestamp
+                user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i, i), new Date(i)));
+                user.setLatestLocationTimestampMillis(i);
+            }
+        });
+        writer.start();
+        long timestamp;
+        do {
+            timestamp = user.getLatestLocationTimestampMillis();
+            if (timestamp != User.NO_LOCATION_TIMESTAMP) {
+                // the reader that sees a timestamp sees its location, or a later one
+                assertTrue(user.getLocationHistory().getLast(user.getUserId()).timeVisited.getTime() >= timestamp);
+            }
+        } while (timestamp != writes);
+        writer.join();
+
+        assertEquals(new Date(writes), user.getLatestLocationTimestamp());
+    }
+}
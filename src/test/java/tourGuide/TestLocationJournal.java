@@ -0,0 +1,231 @@
+package tourGuide;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rewardCentral.RewardCentral;
+import tourGuide.attraction.AttractionSnapshot;
+import tourGuide.helper.InternalTestHelper;
+import tourGuide.persistence.LocationJournal;
+import tourGuide.service.RewardsService;
+import tourGuide.service.TourGuideService;
+import tourGuide.user.User;
+import tourGuide.user.UserRegistry;
+import tourGuide.user.UserReward;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLocationJournal {
+
+    @TempDir
+    Path directory;
+
+    private final Attraction disneyland = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+    private final AttractionSnapshot attractions = new AttractionSnapshot(List.of(disneyland), 1);
+
+    @Test
+    public void replayRestoresTheJournaledLocationsAndRewards() throws IOException {
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        try (LocationJournal journal = new LocationJournal(directory, 1024 * 1024, 0)) {
+            List<CompletableFuture<Void>> appends = IntStream.range(0, 1000)
+                    .mapToObj(i -> journal.appendLocation(new VisitedLocation(user.getUserId(), new Location(i, i), new Date(1000L + i))))
+                    .toList();
+            VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(33.8, -117.9), new Date(500));
+            journal.appendReward(user.getUserId(), new UserReward(visitedLocation, disneyland, 250)).join();
+            appends.forEach(CompletableFuture::join);
+            // group commit: the records queued while a group is forced are written with the next group
+            assertTrue(journal.getWrittenGroups() < journal.getAppendedRecords());
+        }
+
+        UserRegistry users = new UserRegistry();
+        users.add(new User(user.getUserId(), "jon", "000", "jon@tourGuide.com"));
+        try (LocationJournal journal = new LocationJournal(directory, 1024 * 1024, 0)) {
+            assertEquals(1001, journal.replay(users, attractions));
+            // replaying again changes nothing
+            assertEquals(0, journal.replay(users, attractions));
+        }
+
+        User restored = users.getByUserName("jon");
+        assertEquals(1000, restored.getVisitedLocations().size());
+        assertEquals(999, restored.getLastVisitedLocation().location.latitude);
+        assertEquals(new Date(1999), restored.getLatestLocationTimestamp());
+        assertEquals(1, restored.getUserRewards().size());
+        assertSame(disneyland, restored.getUserRewards().get(0).attraction);
+        assertEquals(250, restored.getUserRewards().get(0).getRewardPoints());
+    }
+
+    @Test
+    public void journalIsReplayedBeforeTrackingStarts() throws IOException {
+        GpsUtil gpsUtil = new GpsUtil();
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, new RewardsService(gpsUtil, new RewardCentral()));
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        tourGuideService.addUser(user);
+        try (LocationJournal journal = new LocationJournal(directory, 1024 * 1024, 0)) {
+            journal.appendLocation(new VisitedLocation(user.getUserId(), new Location(1, 1), new Date(1))).join();
+        }
+
+        try (LocationJournal journal = new LocationJournal(directory, 1024 * 1024, 0)) {
+            assertEquals(1, tourGuideService.replayJournal(journal, attractions));
+            tourGuideService.startTracking();
+            assertThrows(IllegalStateException.class, () -> tourGuideService.replayJournal(journal, attractions));
+        } finally {
+            tourGuideService.tracker.stopTracking();
+        }
+        assertEquals(1, user.getVisitedLocations().size());
+    }
+
+    @Test
+    public void groupsAreForcedOncePerSyncInterval() throws InterruptedException, IOException {
+        UUID userId = UUID.randomUUID();
+        try (LocationJournal journal = new LocationJournal(directory, 1024 * 1024, 50)) {
+            List<CompletableFuture<Void>> appends = new ArrayList<>();
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < 10; i++) {
+                    appends.add(journal.appendLocation(new VisitedLocation(userId, new Location(i, i), new Date(round * 10L + i))));
+                }
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+            appends.forEach(CompletableFuture::join);
+
+            // every round is written as it comes, the force waits for the sync interval
+            assertTrue(journal.getSyncs() < journal.getWrittenGroups(),
+                    journal.getSyncs() + " syncs for " + journal.getWrittenGroups() + " groups");
+        }
+    }
+
+    @Test
+    public void replayStopsAtATornRecord() throws IOException {
+        UUID userId = UUID.randomUUID();
+        try (LocationJournal journal = new LocationJournal(directory, 1024 * 1024, 0)) {
+            journal.appendLocation(new VisitedLocation(userId, new Location(1, 1), new Date(1)));
+            journal.appendLocation(new VisitedLocation(userId, new Location(2, 2), new Date(2))).join();
+        }
+        Path segment = segments().get(0);
+        try (var channel = Files.newByteChannel(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(segment) - 3);
+        }
+
+        UserRegistry users = new UserRegistry();
+        users.add(new User(userId, "jon", "000", "jon@tourGuide.com"));
+        try (LocationJournal journal = new LocationJournal(directory, 1024 * 1024, 0)) {
+            assertEquals(1, journal.replay(users, attractions));
+        }
+        assertEquals(1, users.getById(userId).getLastVisitedLocation().location.latitude);
+    }
+
+    @Test
+    public void recordsAfterAFailedWriteAreReplayed() throws IOException {
+        UUID userId = UUID.randomUUID();
+        AtomicBoolean failNextWrite = new AtomicBoolean();
+        LocationJournal failingJournal = new LocationJournal(directory, 1024 * 1024, 0) {
+            @Override
+            protected long write(FileChannel segment, ByteBuffer[] records) throws IOException {
+                if (failNextWrite.getAndSet(false)) {
+                    // torn write: the start of the record reaches the file before the failure
+                    segment.write(records[0].slice(0, 5));
+                    throw new IOException("No space left on device");
+                }
+                return super.write(segment, records);
+            }
+        };
+        try (LocationJournal journal = failingJournal) {
+            journal.appendLocation(new VisitedLocation(userId, new Location(1, 1), new Date(1))).join();
+            failNextWrite.set(true);
+            CompletableFuture<Void> failed = journal.appendLocation(new VisitedLocation(userId, new Location(2, 2), new Date(2)));
+            assertThrows(CompletionException.class, failed::join);
+            journal.appendLocation(new VisitedLocation(userId, new Location(3, 3), new Date(3))).join();
+        }
+
+        UserRegistry users = new UserRegistry();
+        users.add(new User(userId, "jon", "000", "jon@tourGuide.com"));
+        try (LocationJournal journal = new LocationJournal(directory, 1024 * 1024, 0)) {
+            assertEquals(2, journal.replay(users, attractions));
+        }
+        assertEquals(3, users.getById(userId).getLastVisitedLocation().location.latitude);
+    }
+
+    @Test
+    public void appendsWaitForRoomInAFullQueue() throws Exception {
+        UUID userId = UUID.randomUUID();
+        CountDownLatch slowDisk = new CountDownLatch(1);
+        LocationJournal slowJournal = new LocationJournal(directory, 1024 * 1024, 0, 2) {
+            @Override
+            protected long write(FileChannel segment, ByteBuffer[] records) throws IOException {
+                try {
+                    slowDisk.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return super.write(segment, records);
+            }
+        };
+        try (LocationJournal journal = slowJournal) {
+            CompletableFuture<List<CompletableFuture<Void>>> appending = CompletableFuture.supplyAsync(() -> IntStream.range(0, 10)
+                    .mapToObj(i -> journal.appendLocation(new VisitedLocation(userId, new Location(i, i), new Date(i))))
+                    .toList());
+            while (journal.getBlockedAppends() == 0) {
+                Thread.onSpinWait();
+            }
+            assertTrue(journal.getQueuedRecords() <= 2);
+            assertFalse(appending.isDone());
+
+            slowDisk.countDown();
+            appending.get(10, TimeUnit.SECONDS).forEach(CompletableFuture::join);
+            assertEquals(10, journal.getAppendedRecords());
+        }
+    }
+
+    @Test
+    public void segmentsBeforeACheckpointAreDeleted() throws IOException {
+        UUID userId = UUID.randomUUID();
+        try (LocationJournal journal = new LocationJournal(directory, 1024 * 1024, 0)) {
+            journal.appendLocation(new VisitedLocation(userId, new Location(1, 1), new Date(1))).join();
+            long checkpoint = journal.roll();
+            journal.appendLocation(new VisitedLocation(userId, new Location(2, 2), new Date(2))).join();
+            assertEquals(2, segments().size());
+
+            assertEquals(1, journal.deleteSegmentsBefore(checkpoint));
+            assertEquals(1, segments().size());
+        }
+
+        UserRegistry users = new UserRegistry();
+        users.add(new User(userId, "jon", "000", "jon@tourGuide.com"));
+        try (LocationJournal journal = new LocationJournal(directory, 1024 * 1024, 0)) {
+            assertEquals(1, journal.replay(users, attractions));
+        }
+        assertEquals(1, users.getById(userId).getVisitedLocations().size());
+        assertEquals(2, users.getById(userId).getLastVisitedLocation().location.latitude);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> Files.isRegularFile(path)).sorted().toList();
+        }
+    }
+}
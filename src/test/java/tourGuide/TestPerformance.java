@@ -6,7 +6,10 @@ import gpsUtil.location.VisitedLocation;
 import org.apache.commons.lang3.time.StopWatch;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import rewardCentral.RewardCentral;
+import tourGuide.concurrency.ExecutionMode;
 import tourGuide.helper.InternalTestHelper;
 import tourGuide.service.RewardsService;
 import tourGuide.service.TourGuideService;
@@ -16,6 +19,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -47,28 +51,34 @@ public class TestPerformance {
 	}
 
 
-	@Test
-	public void highVolumeTrackLocation() {
+	@ParameterizedTest
+	@EnumSource(ExecutionMode.class)
+	public void highVolumeTrackLocation(ExecutionMode executionMode) {
 
 		GpsUtil gpsUtil = new GpsUtil();
-		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), executionMode);
 		// Users should be incremented up to 100,000, and test finishes within 15 minutes
-		InternalTestHelper.setInternalUserNumber(100_000);
-		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		// -DtourGuide.performance.users=1000000 to compare the execution modes with 1M users
+		InternalTestHelper.setInternalUserNumber(Integer.getInteger("tourGuide.performance.users", 100_000));
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, executionMode);
 
 		List<User> allUsers = new ArrayList<>();
 		allUsers = tourGuideService.getAllUsers();
 		
 	    StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
+		List<CompletableFuture<VisitedLocation>> futures = new ArrayList<>();
 		for(User user : allUsers) {
-			tourGuideService.trackUserLocation(user);
+			futures.add(tourGuideService.trackUserLocation(user));
 			//System.out.println(Locale.getDefault().toString());
 		}
+		// the time until every location is tracked, not only submitted
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
 		stopWatch.stop();
 		tourGuideService.tracker.stopTracking();
 
-		System.out.println("highVolumeTrackLocation: Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds."); 
+		System.out.println("highVolumeTrackLocation(" + executionMode + ", " + allUsers.size() + " users): Time Elapsed: "
+				+ TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
 		assertTrue(TimeUnit.MINUTES.toSeconds(15) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
 	}
 
@@ -3,9 +3,13 @@ package tourGuide;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import org.junit.jupiter.api.Test;
 import rewardCentral.RewardCentral;
+import tourGuide.attraction.AttractionCatalog;
+import tourGuide.cache.RewardPointsCache;
+import tourGuide.concurrency.ExecutionMode;
 import tourGuide.helper.InternalTestHelper;
 import tourGuide.service.RewardsService;
 import tourGuide.service.TourGuideService;
@@ -17,8 +21,11 @@ import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
@@ -42,6 +49,35 @@ public class TestRewardsService {
 		assertEquals(1, userRewards.size());
 	}
 	
+	@Test
+	public void reEntriesOfTheSameFenceCallRewardCentralOnce() {
+		AtomicInteger rewardCentralCalls = new AtomicInteger();
+		// counted in front of the cache: concurrent requests of the same pair would be merged by it
+		RewardPointsCache rewardPointsCache = new RewardPointsCache(new RewardCentral()) {
+			@Override
+			public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+				rewardCentralCalls.incrementAndGet();
+				return 100;
+			}
+		};
+		RewardsService rewardsService = new RewardsService(new AttractionCatalog(new GpsUtil()), rewardPointsCache,
+				ExecutionMode.PLATFORM_THREADS);
+		Attraction attraction = rewardsService.getAttractionCatalog().getSnapshot().get(0);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		for (int i = 0; i < 5; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(-80, 0), new Date()));
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+		}
+
+		rewardsService.calculateRewards(user);
+		// the whole history is evaluated again after an invalidation, the reward is already there
+		rewardsService.invalidateRewardWatermarks();
+		rewardsService.calculateRewards(user);
+
+		assertEquals(1, rewardCentralCalls.get());
+		assertEquals(1, user.getUserRewards().size());
+	}
+
 	@Test
 	public void isWithinAttractionProximity() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -67,4 +103,71 @@ public class TestRewardsService {
 		assertEquals(gpsUtil.getAttractions().size(), userRewards.size());
 	}
 	
+	@Test
+	public void calculateRewardsOnlyChecksNewLocations() {
+		Locale.setDefault(new Locale("en","US"));
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		Attraction attraction = gpsUtil.getAttractions().get(0);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(-80, 0), new Date()));
+		rewardsService.calculateRewards(user);
+		assertEquals(1, user.getRewardWatermark());
+		assertEquals(0, user.getUserRewards().size());
+
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+		rewardsService.calculateRewards(user);
+		assertEquals(2, user.getRewardWatermark());
+		assertEquals(1, user.getUserRewards().size());
+	}
+
+	@Test
+	public void proximityBufferChangeRescansHistory() {
+		Locale.setDefault(new Locale("en","US"));
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(-80, 0), new Date()));
+		rewardsService.calculateRewards(user);
+		assertEquals(0, user.getUserRewards().size());
+
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		rewardsService.calculateRewards(user);
+
+		assertEquals(gpsUtil.getAttractions().size(), user.getUserRewards().size());
+	}
+
+	@Test
+	public void concurrentRewardsAreKeptOncePerAttraction() {
+		Locale.setDefault(new Locale("en","US"));
+		GpsUtil gpsUtil = new GpsUtil();
+		List<Attraction> attractions = gpsUtil.getAttractions();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(0, 0), new Date());
+
+		IntStream.range(0, 8 * attractions.size()).parallel()
+				.forEach(i -> user.addUserReward(new UserReward(visitedLocation, attractions.get(i % attractions.size()), i)));
+
+		assertEquals(attractions.size(), user.getUserRewards().size());
+		attractions.forEach(attraction -> assertTrue(user.hasRewardFor(attraction.attractionName)));
+	}
+
+	@Test
+	public void rewardsAreKeptOncePerAttractionAcrossCatalogReads() {
+		GpsUtil gpsUtil = new GpsUtil();
+		// every read of the catalog gives the same attractions with new ids
+		Attraction attraction = gpsUtil.getAttractions().get(0);
+		Attraction sameAttraction = gpsUtil.getAttractions().get(0);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attraction, new Date());
+
+		assertTrue(user.addUserReward(new UserReward(visitedLocation, attraction, 100)));
+		assertFalse(user.addUserReward(new UserReward(visitedLocation, sameAttraction, 100)));
+
+		assertTrue(user.hasRewardFor(sameAttraction.attractionName));
+		assertEquals(1, user.getUserRewards().size());
+	}
+
 }
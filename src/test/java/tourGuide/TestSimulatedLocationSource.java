@@ -0,0 +1,86 @@
+package tourGuide;
+
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import tourGuide.exception.LocationUnavailableException;
+import tourGuide.location.MovementModel;
+import tourGuide.location.SimulatedLocationSource;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestSimulatedLocationSource {
+
+    private final List<UUID> userIds = IntStream.range(0, 100).mapToObj(i -> UUID.randomUUID()).toList();
+
+    @Test
+    public void sameSeedGivesTheSameTrips() {
+        SimulatedLocationSource batched = new SimulatedLocationSource(42, Duration.ZERO, Duration.ZERO, 0,
+                MovementModel.randomWalk(1), 100);
+        SimulatedLocationSource single = new SimulatedLocationSource(42, Duration.ZERO, Duration.ZERO, 0,
+                MovementModel.randomWalk(1), 1);
+
+        for (int step = 0; step < 3; step++) {
+            Map<UUID, VisitedLocation> locations = batched.getUserLocations(userIds);
+            for (UUID userId : userIds) {
+                VisitedLocation expected = single.getUserLocation(userId);
+                assertEquals(expected.location.latitude, locations.get(userId).location.latitude);
+                assertEquals(expected.location.longitude, locations.get(userId).location.longitude);
+            }
+        }
+        // a batch is one request
+        assertEquals(3, batched.getRequestCount());
+        assertEquals(300, single.getRequestCount());
+    }
+
+    @Test
+    public void sameSeedGivesTheSameErrors() {
+        // jitter on: it must not shift the draws of the errors and the moves
+        SimulatedLocationSource batched = new SimulatedLocationSource(42, Duration.ZERO, Duration.ofNanos(1000), 0.3,
+                MovementModel.randomWalk(1), 100);
+        SimulatedLocationSource single = new SimulatedLocationSource(42, Duration.ZERO, Duration.ofNanos(1000), 0.3,
+                MovementModel.randomWalk(1), 1);
+
+        for (int step = 0; step < 5; step++) {
+            Map<UUID, VisitedLocation> locations = batched.getUserLocations(userIds);
+            for (UUID userId : userIds) {
+                try {
+                    VisitedLocation expected = single.getUserLocation(userId);
+                    assertEquals(expected.location.latitude, locations.get(userId).location.latitude);
+                    assertEquals(expected.location.longitude, locations.get(userId).location.longitude);
+                } catch (LocationUnavailableException e) {
+                    assertFalse(locations.containsKey(userId));
+                }
+            }
+        }
+        assertEquals(batched.getErrorCount(), single.getErrorCount());
+        assertTrue(single.getErrorCount() > 0);
+    }
+
+    @Test
+    public void failedUsersAreMissingFromTheBatch() {
+        SimulatedLocationSource source = new SimulatedLocationSource(42, Duration.ZERO, Duration.ZERO, 0.5,
+                MovementModel.uniform(), 100);
+
+        Map<UUID, VisitedLocation> locations = source.getUserLocations(userIds);
+
+        assertEquals(userIds.size(), locations.size() + source.getErrorCount());
+        assertTrue(source.getErrorCount() > 0 && !locations.isEmpty());
+    }
+
+    @Test
+    public void failedSingleRequestThrows() {
+        SimulatedLocationSource source = new SimulatedLocationSource(42, Duration.ZERO, Duration.ZERO, 1,
+                MovementModel.uniform(), 1);
+
+        assertThrows(LocationUnavailableException.class, () -> source.getUserLocation(userIds.get(0)));
+    }
+}
@@ -1,26 +1,45 @@
 package tourGuide;
 
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import rewardCentral.RewardCentral;
+import tourGuide.cache.TripPricerCache;
+import tourGuide.concurrency.ExecutionMode;
+import tourGuide.dto.BulkResultDTO;
 import tourGuide.dto.NearAttractionDTO;
+import tourGuide.exception.LocationUnavailableException;
+import tourGuide.exception.UserAlreadyExistException;
+import tourGuide.exception.UserNotFoundException;
 import tourGuide.helper.InternalTestHelper;
+import tourGuide.location.LocationSource;
+import tourGuide.location.MovementModel;
+import tourGuide.location.SimulatedLocationSource;
 import tourGuide.service.RewardsService;
 import tourGuide.service.TourGuideService;
 import tourGuide.user.User;
 import tripPricer.Provider;
+import tripPricer.TripPricer;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestTourGuideService {
@@ -64,6 +83,26 @@ public class TestTourGuideService {
         assertEquals(user2, retrievedUser2);
     }
 
+    @Test
+    public void getUserById() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        tourGuideService.addUser(user);
+
+        User retrievedUser = tourGuideService.getUserById(user.getUserId());
+        tourGuideService.tracker.stopTracking();
+
+        assertEquals(user, retrievedUser);
+        assertThrows(UserNotFoundException.class, () -> tourGuideService.getUserById(UUID.randomUUID()));
+        assertThrows(UserAlreadyExistException.class, () -> tourGuideService.addUser(
+                new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com")));
+        assertEquals(1, tourGuideService.getUsers().size());
+    }
+
     @Test
     public void getAllUsers() {
         GpsUtil gpsUtil = new GpsUtil();
@@ -151,6 +190,157 @@ public class TestTourGuideService {
         assertEquals(5, providers.size());
     }
 
+    @Test
+    public void concurrentFirstLocationLookupsShareOneFetch() {
+        AtomicInteger gpsCalls = new AtomicInteger();
+        GpsUtil gpsUtil = new GpsUtil() {
+            @Override
+            public VisitedLocation getUserLocation(UUID userId) {
+                gpsCalls.incrementAndGet();
+                return super.getUserLocation(userId);
+            }
+        };
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+        List<CompletableFuture<VisitedLocation>> lookups = IntStream.range(0, 20)
+                .mapToObj(i -> i % 2 == 0 ? tourGuideService.getUserLocationAsync(user) : tourGuideService.trackUserLocation(user))
+                .toList();
+        VisitedLocation visitedLocation = lookups.get(0).join();
+        lookups.forEach(lookup -> assertEquals(visitedLocation, lookup.join()));
+        assertEquals(1, gpsCalls.get());
+        assertEquals(1, user.getVisitedLocations().size());
+
+        // fetched less than the freshness window ago: served without a new fetch
+        tourGuideService.setLocationFreshnessSeconds(60);
+        assertEquals(visitedLocation.location.latitude, tourGuideService.trackUserLocation(user).join().location.latitude);
+        assertEquals(1, gpsCalls.get());
+
+        tourGuideService.setLocationFreshnessSeconds(0);
+        tourGuideService.trackUserLocation(user).join();
+        tourGuideService.tracker.stopTracking();
+
+        assertEquals(2, gpsCalls.get());
+        assertEquals(2, user.getVisitedLocations().size());
+    }
+
+    @Test
+    public void trackingSucceedsWhenTheRewardsAreRejected() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        Attraction attraction = rewardsService.getAttractionCatalog().getSnapshot().get(0);
+        LocationSource locationSource = userId -> new VisitedLocation(userId, attraction, new Date());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(locationSource, rewardsService,
+                new TripPricerCache(new TripPricer()), ExecutionMode.PLATFORM_THREADS);
+        tourGuideService.tracker.stopTracking();
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        // every RewardCentral call is rejected with a DownstreamOverloadedException
+        rewardsService.setMaxQueuedRewardCentralCalls(0);
+
+        VisitedLocation visitedLocation = tourGuideService.trackUserLocation(user).join();
+
+        assertEquals(1, user.getVisitedLocations().size());
+        assertEquals(visitedLocation.location.latitude, user.getLastVisitedLocation().location.latitude);
+        assertTrue(user.getUserRewards().isEmpty());
+        // not moved: the rejected location is evaluated again by the next calculation
+        assertEquals(0, user.getRewardWatermark());
+
+        rewardsService.setMaxQueuedRewardCentralCalls(Integer.MAX_VALUE);
+        rewardsService.calculateRewards(user);
+
+        assertEquals(1, user.getUserRewards().size());
+        assertEquals(1, user.getRewardWatermark());
+    }
+
+    @Test
+    public void usersAreTrackedInOneBatchRequest() {
+        SimulatedLocationSource locationSource = new SimulatedLocationSource(42, Duration.ZERO, Duration.ZERO, 0,
+                MovementModel.randomWalk(1), 10);
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(locationSource, rewardsService,
+                new TripPricerCache(new TripPricer()), ExecutionMode.PLATFORM_THREADS);
+        List<User> users = IntStream.range(0, 10)
+                .mapToObj(i -> new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"))
+                .toList();
+
+        List<VisitedLocation> visitedLocations = tourGuideService.trackUserLocations(users).stream()
+                .map(CompletableFuture::join)
+                .toList();
+        tourGuideService.tracker.stopTracking();
+
+        assertEquals(10, tourGuideService.getLocationBatchSize());
+        assertEquals(1, locationSource.getRequestCount());
+        for (int i = 0; i < users.size(); i++) {
+            assertEquals(users.get(i).getUserId(), visitedLocations.get(i).userId);
+            assertEquals(1, users.get(i).getVisitedLocations().size());
+        }
+    }
+
+    @Test
+    public void userMissingFromTheBatchFailsAlone() {
+        SimulatedLocationSource locationSource = new SimulatedLocationSource(42, Duration.ZERO, Duration.ZERO, 0.5,
+                MovementModel.uniform(), 100);
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(locationSource, rewardsService,
+                new TripPricerCache(new TripPricer()), ExecutionMode.PLATFORM_THREADS);
+        List<User> users = IntStream.range(0, 100)
+                .mapToObj(i -> new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"))
+                .toList();
+
+        List<CompletableFuture<VisitedLocation>> trackings = tourGuideService.trackUserLocations(users);
+        long failed = trackings.stream().filter(tracking -> {
+            try {
+                tracking.join();
+                return false;
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof LocationUnavailableException);
+                return true;
+            }
+        }).count();
+        tourGuideService.tracker.stopTracking();
+
+        assertEquals(locationSource.getErrorCount(), failed);
+        assertEquals(100 - failed, users.stream().filter(user -> !user.getVisitedLocations().isEmpty()).count());
+    }
+
+    @Test
+    public void tripDealsAreCachedUntilTheInputsChange() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        AtomicInteger pricerCalls = new AtomicInteger();
+        TripPricer tripPricer = new TripPricer() {
+            @Override
+            public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay, int rewardsPoints) {
+                pricerCalls.incrementAndGet();
+                return super.getPrice(apiKey, attractionId, adults, children, nightsStay, rewardsPoints);
+            }
+        };
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService,
+                new TripPricerCache(tripPricer), ExecutionMode.PLATFORM_THREADS);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+        List<CompletableFuture<List<Provider>>> refreshes = IntStream.range(0, 10)
+                .mapToObj(i -> tourGuideService.getTripDealsAsync(user))
+                .toList();
+        List<Provider> providers = refreshes.get(0).join();
+        refreshes.forEach(refresh -> assertEquals(providers, refresh.join()));
+        assertEquals(1, pricerCalls.get());
+
+        user.getUserPreferences().setNumberOfAdults(2);
+        tourGuideService.getTripDeals(user);
+        tourGuideService.tracker.stopTracking();
+
+        assertEquals(2, pricerCalls.get());
+    }
+
 
     @Test
     void getAllCurrentLocations() {
@@ -163,4 +353,107 @@ public class TestTourGuideService {
         assertThat(allCurrentLocations.size()).isEqualTo(1000);
 
     }
+
+    @Test
+    void forEachCurrentLocationPagesThroughAllUsers() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(250);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+        tourGuideService.tracker.stopTracking();
+
+        Map<UUID, Location> pagedLocations = new HashMap<>();
+        UUID cursor = null;
+        int pages = 0;
+        do {
+            cursor = tourGuideService.forEachCurrentLocation(cursor, 100, pagedLocations::put);
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(250, pagedLocations.size());
+        tourGuideService.getUsers().forEach(user ->
+                assertEquals(user.getLastVisitedLocation().location.latitude, pagedLocations.get(user.getUserId()).latitude, 0));
+    }
+
+    @Test
+    void forEachLocationChangeOnlyVisitsMovedUsers() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(100);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+        tourGuideService.tracker.stopTracking();
+
+        Map<UUID, Location> allLocations = new HashMap<>();
+        long version = tourGuideService.forEachLocationChange(0, allLocations::put);
+        assertEquals(100, allLocations.size());
+
+        User movedUser = tourGuideService.getAllUsers().get(42);
+        movedUser.addToVisitedLocations(new VisitedLocation(movedUser.getUserId(), new Location(12, 34), new Date()));
+
+        Map<UUID, Location> changedLocations = new HashMap<>();
+        long nextVersion = tourGuideService.forEachLocationChange(version, changedLocations::put);
+
+        assertEquals(1, changedLocations.size());
+        assertEquals(12, changedLocations.get(movedUser.getUserId()).latitude, 0);
+        assertTrue(nextVersion > version);
+        assertEquals(0, countLocationChanges(tourGuideService, nextVersion));
+    }
+
+    @Test
+    void pollingDuringConcurrentWritesNeverMissesALocation() throws InterruptedException {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+        tourGuideService.tracker.stopTracking();
+        List<User> users = IntStream.range(0, 64)
+                .mapToObj(i -> new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"))
+                .toList();
+        users.forEach(tourGuideService::addUser);
+
+        List<Thread> writers = IntStream.range(0, 4).mapToObj(w -> Thread.ofPlatform().start(() -> {
+            for (int step = 1; step <= 500; step++) {
+                for (int i = w; i < users.size(); i += 4) {
+                    User user = users.get(i);
+                    user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(step, 0), new Date()));
+                }
+            }
+        })).toList();
+        // the client keeps the last location of every poll, the first poll sees every location since the start
+        Map<UUID, Location> seen = new HashMap<>();
+        long version = 0;
+        while (writers.stream().anyMatch(Thread::isAlive)) {
+            version = tourGuideService.forEachLocationChange(version, seen::put);
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        tourGuideService.forEachLocationChange(version, seen::put);
+
+        users.forEach(user -> assertEquals(500, seen.get(user.getUserId()).latitude, 0));
+    }
+
+    @Test
+    void bulkNearbyAttractionsReportsUnknownUsers() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(3);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+        tourGuideService.tracker.stopTracking();
+
+        BulkResultDTO<List<NearAttractionDTO>> bulkResult = tourGuideService.getNearByAttractionsAsync(
+                List.of("internalUser0", "internalUser1", "internalUser0", "unknown"), 10_000).join();
+
+        assertEquals(2, bulkResult.getResults().size());
+        bulkResult.getResults().values().forEach(nearAttractions -> assertEquals(5, nearAttractions.size()));
+        assertEquals(1, bulkResult.getErrors().size());
+        assertTrue(bulkResult.getErrors().containsKey("unknown"));
+    }
+
+    private static int countLocationChanges(TourGuideService tourGuideService, long sinceVersion) {
+        Map<UUID, Location> locations = new HashMap<>();
+        tourGuideService.forEachLocationChange(sinceVersion, locations::put);
+        return locations.size();
+    }
 }
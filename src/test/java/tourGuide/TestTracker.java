@@ -0,0 +1,141 @@
+package tourGuide;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+import tourGuide.cache.TripPricerCache;
+import tourGuide.concurrency.ExecutionMode;
+import tourGuide.helper.InternalTestHelper;
+import tourGuide.location.LocationSource;
+import tourGuide.service.RewardsService;
+import tourGuide.service.TourGuideService;
+import tourGuide.tracker.Tracker;
+import tourGuide.tracker.TrackerMetrics;
+import tourGuide.user.User;
+import tripPricer.TripPricer;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTracker {
+    @BeforeEach
+    public void setup() {
+        Locale.setDefault(new Locale("en", "US"));
+    }
+
+    @Test
+    public void cycleCompletesWhenEveryTrackCompletes() throws InterruptedException {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+        tourGuideService.tracker.stopTracking();
+        for (int i = 0; i < 10; i++) {
+            tourGuideService.addUser(new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com"));
+        }
+
+        Tracker tracker = new Tracker(tourGuideService, Duration.ofSeconds(1), 4, 5);
+        tracker.startTracking();
+        TrackerMetrics metrics = tracker.getMetrics();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (metrics.getCompletedCycles() == 0 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        tracker.stopTracking();
+
+        assertTrue(metrics.getCompletedCycles() >= 1);
+        assertEquals(10, metrics.getLastCycleUserCount());
+        assertTrue(metrics.getSuccessfulTracks() >= 10);
+        assertEquals(0, metrics.getFailedTracks());
+        assertTrue(metrics.getLastCycleDurationSeconds() > 0);
+        tourGuideService.getAllUsers().forEach(user -> assertNotNull(user.getLatestLocationTimestamp()));
+    }
+
+    @Test
+    public void tracksInFlightNeverExceedTheLimit() throws InterruptedException {
+        AtomicInteger runningCalls = new AtomicInteger();
+        AtomicInteger maxRunningCalls = new AtomicInteger();
+        AtomicInteger completedCalls = new AtomicInteger();
+        LocationSource slowLocationSource = userId -> {
+            maxRunningCalls.accumulateAndGet(runningCalls.incrementAndGet(), Math::max);
+            try {
+                TimeUnit.MILLISECONDS.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                runningCalls.decrementAndGet();
+                completedCalls.incrementAndGet();
+            }
+            return new VisitedLocation(userId, new Location(0, 0), new Date());
+        };
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(slowLocationSource, rewardsService,
+                new TripPricerCache(new TripPricer()), ExecutionMode.PLATFORM_THREADS);
+        for (int i = 0; i < 40; i++) {
+            tourGuideService.addUser(new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com"));
+        }
+
+        // one slot: every track of the cycle is due at once, only the limit holds them back
+        Tracker tracker = new Tracker(tourGuideService, Duration.ofMinutes(1), 1, 4);
+        tracker.startTracking();
+        int maxInFlight = 0;
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (completedCalls.get() < 40 && System.currentTimeMillis() < deadline) {
+            maxInFlight = Math.max(maxInFlight, tracker.getInFlightCount());
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        tracker.stopTracking();
+
+        assertEquals(40, completedCalls.get());
+        assertTrue(maxInFlight <= 4);
+        assertEquals(4, maxRunningCalls.get());
+    }
+
+    @Test
+    public void stalenessIsSampledForEveryUserWhenItsSlotComesUp() throws InterruptedException {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+        tourGuideService.tracker.stopTracking();
+        Date tenMinutesAgo = new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(10));
+        for (int i = 0; i < 10; i++) {
+            User user = new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com");
+            user.setLatestLocationTimestamp(tenMinutesAgo);
+            tourGuideService.addUser(user);
+        }
+        tourGuideService.addUser(new User(UUID.randomUUID(), "never", "000", "never@tourGuide.com"));
+
+        // long enough for the checks to run before the next cycle samples the slots again
+        Tracker tracker = new Tracker(tourGuideService, Duration.ofSeconds(2), 4, 20);
+        List<Long> stalenessSamples = new CopyOnWriteArrayList<>();
+        tracker.getMetrics().setStalenessListener(stalenessSamples::add);
+        tracker.startTracking();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (tracker.getMetrics().getCompletedCycles() == 0 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        tracker.stopTracking();
+
+        // the user never tracked is stale without a staleness
+        assertTrue(stalenessSamples.size() >= 10);
+        stalenessSamples.subList(0, 10).forEach(staleness -> assertTrue(staleness >= TimeUnit.MINUTES.toMillis(10)));
+        assertTrue(tracker.getMetrics().getMaxStalenessSeconds() >= 600);
+        assertEquals(11, tracker.getMetrics().getStaleUserCount());
+    }
+}
@@ -0,0 +1,109 @@
+package tourGuide;
+
+import org.junit.jupiter.api.Test;
+import tourGuide.tracker.TrackingWheel;
+import tourGuide.user.User;
+import tourGuide.user.UserRegistry;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTrackingWheel {
+
+    private static List<User> users(int count) {
+        return users("user", count);
+    }
+
+    private static List<User> users(String prefix, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new User(UUID.randomUUID(), prefix + i, "000", prefix + i + "@tourGuide.com"))
+                .toList();
+    }
+
+    private static Map<User, Integer> slotsByUser(TrackingWheel wheel) {
+        Map<User, Integer> slotsByUser = new HashMap<>();
+        for (int slot = 0; slot < wheel.getSlotCount(); slot++) {
+            for (User user : wheel.getSlot(slot)) {
+                // null: the user isn't in another slot already
+                assertNull(slotsByUser.put(user, slot));
+            }
+        }
+        return slotsByUser;
+    }
+
+    private static UserRegistry registry(List<User> users) {
+        UserRegistry registry = new UserRegistry();
+        users.forEach(registry::add);
+        return registry;
+    }
+
+    @Test
+    public void slotsPartitionTheUsers() {
+        List<User> users = users(10000);
+
+        TrackingWheel wheel = new TrackingWheel(300, registry(users)::getUsersBetween);
+        Map<User, Integer> slotsByUser = slotsByUser(wheel);
+
+        assertEquals(300, wheel.getSlotCount());
+        assertEquals(users.size(), slotsByUser.size());
+        assertTrue(slotsByUser.keySet().containsAll(users));
+        // spread over the interval: no slot gets more than twice its share
+        IntStream.range(0, wheel.getSlotCount())
+                .forEach(slot -> assertTrue(wheel.getSlot(slot).size() < 2 * users.size() / wheel.getSlotCount()));
+    }
+
+    @Test
+    public void usersKeepTheirSlotAcrossCycles() {
+        List<User> users = users(1000);
+        UserRegistry registry = registry(users);
+        TrackingWheel wheel = new TrackingWheel(60, registry::getUsersBetween);
+        Map<User, Integer> firstCycle = slotsByUser(wheel);
+
+        // next cycle: users joined in between, the same wheel shows them without being rebuilt
+        List<User> newUsers = users("newUser", 100);
+        newUsers.forEach(registry::add);
+        Map<User, Integer> nextCycle = slotsByUser(wheel);
+
+        users.forEach(user -> assertEquals(firstCycle.get(user), nextCycle.get(user)));
+        assertTrue(nextCycle.keySet().containsAll(newUsers));
+        // a new wheel over the same registry gives the same slots
+        assertEquals(nextCycle, slotsByUser(new TrackingWheel(60, registry::getUsersBetween)));
+    }
+
+    @Test
+    public void extremeIdsHaveASlot() {
+        List<User> users = List.of(
+                new User(new UUID(Long.MIN_VALUE, Long.MIN_VALUE), "min", "000", "min@tourGuide.com"),
+                new User(new UUID(0, 0), "zero", "000", "zero@tourGuide.com"),
+                new User(new UUID(Long.MAX_VALUE, Long.MAX_VALUE), "max", "000", "max@tourGuide.com"));
+
+        Map<User, Integer> slotsByUser = slotsByUser(new TrackingWheel(7, registry(users)::getUsersBetween));
+
+        assertEquals(0, slotsByUser.get(users.get(0)));
+        assertEquals(3, slotsByUser.get(users.get(1)));
+        assertEquals(6, slotsByUser.get(users.get(2)));
+    }
+
+    @Test
+    public void emptyWheelHasEmptySlots() {
+        TrackingWheel wheel = new TrackingWheel(10, new UserRegistry()::getUsersBetween);
+
+        IntStream.range(0, 10).forEach(slot -> assertTrue(wheel.getSlot(slot).isEmpty()));
+    }
+
+    @Test
+    public void singleSlotHasEveryUser() {
+        List<User> users = users(10);
+
+        TrackingWheel wheel = new TrackingWheel(1, registry(users)::getUsersBetween);
+
+        assertEquals(users.size(), slotsByUser(wheel).size());
+    }
+}
@@ -0,0 +1,47 @@
+package tourGuide;
+
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import tourGuide.helper.UserGenerator;
+import tourGuide.user.User;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestUserGenerator {
+
+    @Test
+    public void sameSeedGivesSameUsers() {
+        List<User> users = new UserGenerator(7, 3, 0, 0).generate(1000);
+        List<User> sameUsers = new UserGenerator(7, 3, 0, 0).generate(1000);
+        List<User> otherUsers = new UserGenerator(8, 3, 0, 0).generate(1000);
+
+        assertEquals(1000, users.size());
+        for (int i = 0; i < users.size(); i++) {
+            assertEquals("internalUser" + i, users.get(i).getUserName());
+            assertEquals(users.get(i).getUserId(), sameUsers.get(i).getUserId());
+            assertEquals(users.get(i).getLastVisitedLocation().location.latitude,
+                    sameUsers.get(i).getLastVisitedLocation().location.latitude);
+        }
+        assertNotEquals(users.get(0).getUserId(), otherUsers.get(0).getUserId());
+        assertEquals(4, users.get(0).getUserId().version());
+    }
+
+    @Test
+    public void clusteredLocationsStayNearTheirCenter() {
+        List<User> users = new UserGenerator(7, 5, 1, 0.5).generate(200);
+        VisitedLocation first = users.get(0).getVisitedLocations().get(0);
+
+        users.forEach(user -> {
+            assertEquals(5, user.getVisitedLocations().size());
+            user.getVisitedLocations().forEach(visitedLocation -> {
+                assertTrue(Math.abs(visitedLocation.location.latitude - first.location.latitude) <= 1.0);
+                assertTrue(Math.abs(visitedLocation.location.longitude - first.location.longitude) <= 1.0
+                        || Math.abs(visitedLocation.location.longitude - first.location.longitude) >= 359.0);
+            });
+        });
+    }
+}
@@ -0,0 +1,186 @@
+package tourGuide;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tourGuide.attraction.AttractionSnapshot;
+import tourGuide.helper.UserGenerator;
+import tourGuide.persistence.LocationJournal;
+import tourGuide.persistence.UserSnapshotStore;
+import tourGuide.user.User;
+import tourGuide.user.UserRegistry;
+import tourGuide.user.UserReward;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestUserSnapshotStore {
+
+    @TempDir
+    Path directory;
+
+    private final Attraction disneyland = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+    private final AttractionSnapshot attractions = new AttractionSnapshot(List.of(disneyland), 1);
+
+    @Test
+    public void usersAreRestoredAsWritten() throws IOException {
+        List<User> users = new UserGenerator(7, 5, 0, 0).generate(1000);
+        User user = users.get(0);
+        user.setLatestLocationTimestamp(new Date(123456789L));
+        user.getUserPreferences().setAttractionProximity(42);
+        user.getUserPreferences().setTripDuration(3);
+        user.getUserPreferences().setNumberOfChildren(2);
+        VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(33.8, -117.9), new Date(1000));
+        user.addUserReward(new UserReward(visitedLocation, disneyland, 250));
+        Attraction removed = new Attraction("Gone", "City", "ST", 10, 20);
+        user.addUserReward(new UserReward(visitedLocation, removed, 100));
+
+        UserSnapshotStore store = new UserSnapshotStore(directory.resolve("users.snapshot"));
+        assertEquals(1000, store.write(users));
+        List<User> restored = store.read(attractions);
+
+        assertEquals(users.size(), restored.size());
+        for (int i = 0; i < users.size(); i++) {
+            User expected = users.get(i);
+            User actual = restored.get(i);
+            assertEquals(expected.getUserId(), actual.getUserId());
+            assertEquals(expected.getUserName(), actual.getUserName());
+            assertEquals(expected.getEmailAddress(), actual.getEmailAddress());
+            assertEquals(expected.getVisitedLocations().size(), actual.getVisitedLocations().size());
+            for (int j = 0; j < expected.getVisitedLocations().size(); j++) {
+                VisitedLocation expectedLocation = expected.getVisitedLocations().get(j);
+                VisitedLocation actualLocation = actual.getVisitedLocations().get(j);
+                assertEquals(expectedLocation.location.latitude, actualLocation.location.latitude);
+                assertEquals(expectedLocation.location.longitude, actualLocation.location.longitude);
+                assertEquals(expectedLocation.timeVisited, actualLocation.timeVisited);
+            }
+        }
+
+        User restoredUser = restored.get(0);
+        assertEquals(new Date(123456789L), restoredUser.getLatestLocationTimestamp());
+        assertEquals(42, restoredUser.getUserPreferences().getAttractionProximity());
+        assertEquals(3, restoredUser.getUserPreferences().getTripDuration());
+        assertEquals(2, restoredUser.getUserPreferences().getNumberOfChildren());
+        assertNull(restored.get(1).getLatestLocationTimestamp());
+
+        List<UserReward> rewards = restoredUser.getUserRewards();
+        assertEquals(2, rewards.size());
+        UserReward disneylandReward = rewards.stream().filter(r -> r.attraction.attractionName.equals("Disneyland")).findFirst().orElseThrow();
+        UserReward removedReward = rewards.stream().filter(r -> r.attraction.attractionName.equals("Gone")).findFirst().orElseThrow();
+        // bound to the attraction of the current catalog, rebuilt when it is not in the catalog anymore
+        assertSame(disneyland, disneylandReward.attraction);
+        assertEquals(250, disneylandReward.getRewardPoints());
+        assertEquals(new Date(1000), disneylandReward.visitedLocation.timeVisited);
+        assertEquals(20, removedReward.attraction.longitude);
+        assertTrue(restoredUser.hasRewardFor(disneyland.attractionName));
+    }
+
+    @Test
+    public void restoredUsersKeepTheRetentionOfTheStore() throws IOException {
+        List<User> users = new UserGenerator(7, 5, 0, 0, 10).generate(10);
+        UserSnapshotStore store = new UserSnapshotStore(directory.resolve("users.snapshot"), 2);
+        store.write(users);
+
+        for (User user : store.read(attractions)) {
+            // the 2 latest locations of the snapshot, the older ones are dropped
+            assertEquals(2, user.getLocationHistory().size());
+            User written = users.stream().filter(u -> u.getUserId().equals(user.getUserId())).findFirst().orElseThrow();
+            assertEquals(written.getLastVisitedLocation().location.latitude, user.getLastVisitedLocation().location.latitude);
+        }
+    }
+
+    @Test
+    public void missingSnapshotGivesNoUsers() throws IOException {
+        UserSnapshotStore store = new UserSnapshotStore(directory.resolve("missing.snapshot"));
+
+        assertTrue(store.read(attractions).isEmpty());
+    }
+
+    @Test
+    public void truncatedSnapshotIsRejected() throws IOException {
+        Path path = directory.resolve("users.snapshot");
+        UserSnapshotStore store = new UserSnapshotStore(path);
+        store.write(new UserGenerator(7, 3, 0, 0).generate(10));
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+
+        assertThrows(IOException.class, () -> store.read(attractions));
+    }
+
+    @Test
+    public void journalIsCompactedAfterADurableSnapshot() throws IOException {
+        Path journalDirectory = directory.resolve("journal");
+        List<User> users = new UserGenerator(7, 3, 0, 0).generate(10);
+        List<FileChannel> forced = new ArrayList<>();
+        UserSnapshotStore store = new UserSnapshotStore(directory.resolve("users.snapshot")) {
+            @Override
+            protected void force(FileChannel channel) throws IOException {
+                forced.add(channel);
+                super.force(channel);
+            }
+        };
+        try (LocationJournal journal = new LocationJournal(journalDirectory, 1024 * 1024, 0)) {
+            journal.appendLocation(new VisitedLocation(users.get(0).getUserId(), new Location(1, 1), new Date(1))).join();
+            store.setJournal(journal);
+            store.startPeriodicSnapshots(() -> users, Duration.ofHours(1));
+            store.shutdown();
+
+            // the temporary file, then the directory of the rename
+            assertEquals(2, forced.size());
+            assertEquals(1, segments(journalDirectory).size());
+        }
+        assertEquals(10, store.read(attractions).size());
+    }
+
+    @Test
+    public void journalIsKeptWhenTheSnapshotIsNotDurable() throws IOException {
+        Path journalDirectory = directory.resolve("journal");
+        List<User> users = new UserGenerator(7, 3, 0, 0).generate(10);
+        UserSnapshotStore store = new UserSnapshotStore(directory.resolve("users.snapshot")) {
+            @Override
+            protected void force(FileChannel channel) throws IOException {
+                throw new IOException("No space left on device");
+            }
+        };
+        UUID userId = users.get(0).getUserId();
+        try (LocationJournal journal = new LocationJournal(journalDirectory, 1024 * 1024, 0)) {
+            journal.appendLocation(new VisitedLocation(userId, new Location(1, 1), new Date(1))).join();
+            store.setJournal(journal);
+            store.startPeriodicSnapshots(() -> users, Duration.ofHours(1));
+            store.shutdown();
+
+            assertEquals(2, segments(journalDirectory).size());
+        }
+        assertFalse(Files.exists(directory.resolve("users.snapshot")));
+
+        UserRegistry registry = new UserRegistry();
+        registry.add(new User(userId, "jon", "000", "jon@tourGuide.com"));
+        try (LocationJournal journal = new LocationJournal(journalDirectory, 1024 * 1024, 0)) {
+            assertEquals(1, journal.replay(registry, attractions));
+        }
+    }
+
+    private static List<Path> segments(Path journalDirectory) throws IOException {
+        try (Stream<Path> paths = Files.list(journalDirectory)) {
+            return paths.filter(Files::isRegularFile).toList();
+        }
+    }
+}
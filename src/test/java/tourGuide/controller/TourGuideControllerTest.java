@@ -1,5 +1,6 @@
 package tourGuide.controller;
 
+import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import org.junit.jupiter.api.BeforeEach;
@@ -9,9 +10,11 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 import tourGuide.TourGuideController;
+import tourGuide.dto.BulkResultDTO;
 import tourGuide.dto.NearAttractionDTO;
 import tourGuide.helper.InternalTestHelper;
 import tourGuide.service.TourGuideService;
@@ -19,16 +22,27 @@ import tourGuide.user.User;
 import tourGuide.user.UserReward;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@WebMvcTest(controllers = TourGuideController.class)
+@WebMvcTest(controllers = TourGuideController.class, properties = "tourGuide.request.timeoutMillis=200")
 class TourGuideControllerTest {
     @Autowired
     private MockMvc mockMvc;
@@ -62,10 +76,13 @@ class TourGuideControllerTest {
         user.addToVisitedLocations(visitedLocation);
 
         when(tourGuideService.getUser(user.getUserName())).thenReturn(user);
-        when(tourGuideService.getUserLocation(user)).thenReturn(visitedLocation);
+        when(tourGuideService.getUserLocationAsync(user)).thenReturn(CompletableFuture.completedFuture(visitedLocation));
 
-        mockMvc.perform(get("/getLocation")
+        MvcResult mvcResult = mockMvc.perform(get("/getLocation")
                         .param("userName", user.getUserName()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.size()", is(2)))
@@ -82,19 +99,36 @@ class TourGuideControllerTest {
         VisitedLocation visitedLocation = new VisitedLocation(userID, location, new Date());
         user.addToVisitedLocations(visitedLocation);
 
-        /* Attraction attraction = new Attraction("TourEiffel", "Paris", "France", location.latitude, location.longitude);
-        AttractionLocalDistance attractionLocalDistance = new AttractionLocalDistance(attraction, visitedLocation, rewardsService);
-        NearAttractionDTO nearAttractionDTO = new NearAttractionDTO(attraction, visitedLocation, attractionLocalDistance, rewardCentral);*/
-        List<NearAttractionDTO> nearAttractionDTOS = new ArrayList<>(); // List.of(nearAttractionDTO)
-
+        Attraction attraction = new Attraction("TourEiffel", "Paris", "France", location.latitude, location.longitude);
+        List<NearAttractionDTO> nearAttractionDTOS = List.of(new NearAttractionDTO(attraction, visitedLocation, 0, 250));
 
         when(tourGuideService.getUser(user.getUserName())).thenReturn(user);
-        when(tourGuideService.getUserLocation(user)).thenReturn(visitedLocation);
-        when(tourGuideService.getNearByAttractions(visitedLocation)).thenReturn(nearAttractionDTOS);
+        when(tourGuideService.getUserLocationAsync(user)).thenReturn(CompletableFuture.completedFuture(visitedLocation));
+        when(tourGuideService.getNearByAttractionsAsync(visitedLocation)).thenReturn(CompletableFuture.completedFuture(nearAttractionDTOS));
 
-        mockMvc.perform(get("/getNearbyAttractions")
+        MvcResult mvcResult = mockMvc.perform(get("/getNearbyAttractions")
                 .param("userName", user.getUserName()))
-                .andExpect(status().isOk());
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].attractionName", is("TourEiffel")))
+                .andExpect(jsonPath("$[0].rewardsPoints", is(250)));
+    }
+
+    @Test
+    void getLocationTimesOut() throws Exception {
+        User user = new User(UUID.randomUUID(), "USER", "000", "userEmail");
+
+        when(tourGuideService.getUser(user.getUserName())).thenReturn(user);
+        when(tourGuideService.getUserLocationAsync(user)).thenReturn(new CompletableFuture<>());
+
+        MvcResult mvcResult = mockMvc.perform(get("/getLocation")
+                        .param("userName", user.getUserName()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isGatewayTimeout());
     }
 
     @Test
@@ -134,4 +168,120 @@ class TourGuideControllerTest {
                 .andExpect(jsonPath("$." + user.getUserId().toString() + ".latitude", is(20.5)));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void streamAllCurrentLocations() throws Exception {
+        UUID userID = UUID.randomUUID();
+        UUID nextCursor = UUID.randomUUID();
+        Location location = new Location(20.5, 30.54);
+
+        when(tourGuideService.forEachCurrentLocation(isNull(), eq(1), any())).thenAnswer(invocation -> {
+            BiConsumer<UUID, Location> consumer = invocation.getArgument(2);
+            consumer.accept(userID, location);
+            return nextCursor;
+        });
+
+        MvcResult mvcResult = mockMvc.perform(get("/getAllCurrentLocations").param("limit", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.locations." + userID + ".latitude", is(20.5)))
+                .andExpect(jsonPath("$.locations." + userID + ".longitude", is(30.54)))
+                .andExpect(jsonPath("$.nextCursor", is(nextCursor.toString())));
+    }
+
+    @Test
+    void streamAllCurrentLocationsRejectsInvalidLimit() throws Exception {
+        mockMvc.perform(get("/getAllCurrentLocations").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getBulkLocations() throws Exception {
+        List<String> userNames = List.of("USER", "UNKNOWN");
+        BulkResultDTO<Location> bulkResult = new BulkResultDTO<>();
+        bulkResult.addResult("USER", new Location(20.5, 30.54));
+        bulkResult.addError("UNKNOWN", "This user doesn't exist in the DB with this username: UNKNOWN");
+
+        when(tourGuideService.getUserLocationsAsync(eq(userNames), eq(200L))).thenReturn(CompletableFuture.completedFuture(bulkResult));
+
+        MvcResult mvcResult = mockMvc.perform(post("/bulk/getLocations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"USER\", \"UNKNOWN\"]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.results.size()", is(1)))
+                .andExpect(jsonPath("$.results.USER.latitude", is(20.5)))
+                .andExpect(jsonPath("$.results.USER.longitude", is(30.54)))
+                .andExpect(jsonPath("$.errors.size()", is(1)))
+                .andExpect(jsonPath("$.errors.UNKNOWN", is("This user doesn't exist in the DB with this username: UNKNOWN")));
+    }
+
+    @Test
+    void getBulkRewards() throws Exception {
+        List<String> userNames = List.of("USER", "UNKNOWN");
+        Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+        VisitedLocation visitedLocation = new VisitedLocation(UUID.randomUUID(), attraction, new Date());
+        BulkResultDTO<List<UserReward>> bulkResult = new BulkResultDTO<>();
+        bulkResult.addResult("USER", List.of(new UserReward(visitedLocation, attraction, 250)));
+        bulkResult.addError("UNKNOWN", "This user doesn't exist in the DB with this username: UNKNOWN");
+
+        when(tourGuideService.getUserRewards(eq(userNames))).thenReturn(bulkResult);
+
+        mockMvc.perform(post("/bulk/getRewards")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"USER\", \"UNKNOWN\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results.USER.size()", is(1)))
+                .andExpect(jsonPath("$.results.USER[0].attraction.attractionName", is("Disneyland")))
+                .andExpect(jsonPath("$.results.USER[0].rewardPoints", is(250)))
+                .andExpect(jsonPath("$.errors.UNKNOWN", is("This user doesn't exist in the DB with this username: UNKNOWN")));
+    }
+
+    @Test
+    void getBulkNearbyAttractions() throws Exception {
+        List<String> userNames = List.of("USER", "LATE");
+        Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+        VisitedLocation visitedLocation = new VisitedLocation(UUID.randomUUID(), new Location(33.8, -117.9), new Date());
+        BulkResultDTO<List<NearAttractionDTO>> bulkResult = new BulkResultDTO<>();
+        bulkResult.addResult("USER", List.of(new NearAttractionDTO(attraction, visitedLocation, 1.5, 100)));
+        bulkResult.addError("LATE", "timed out");
+
+        when(tourGuideService.getNearByAttractionsAsync(eq(userNames), eq(200L))).thenReturn(CompletableFuture.completedFuture(bulkResult));
+
+        MvcResult mvcResult = mockMvc.perform(post("/bulk/getNearbyAttractions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"USER\", \"LATE\"]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results.USER.size()", is(1)))
+                .andExpect(jsonPath("$.results.USER[0].attractionName", is("Disneyland")))
+                .andExpect(jsonPath("$.results.USER[0].attractionDistance", is(1.5)))
+                .andExpect(jsonPath("$.results.USER[0].rewardsPoints", is(100)))
+                .andExpect(jsonPath("$.errors.LATE", is("timed out")));
+    }
+
+    @Test
+    void bulkRequestsRejectMoreThanTheLimit() throws Exception {
+        StringJoiner userNames = new StringJoiner(",", "[", "]");
+        for (int i = 0; i <= 10_000; i++) {
+            userNames.add("\"user" + i + "\"");
+        }
+
+        for (String endpoint : List.of("/bulk/getLocations", "/bulk/getRewards", "/bulk/getNearbyAttractions")) {
+            mockMvc.perform(post(endpoint)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(userNames.toString()))
+                    .andExpect(status().isBadRequest());
+        }
+        verify(tourGuideService, never()).getUserLocationsAsync(anyList(), anyLong());
+        verify(tourGuideService, never()).getUserRewards(anyList());
+        verify(tourGuideService, never()).getNearByAttractionsAsync(anyList(), anyLong());
+    }
+}